@@ -0,0 +1,217 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.FilmorateApplication;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.ReferenceDataCache;
+import ru.yandex.practicum.filmorate.storage.UserStorage;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Поднимает контекст приложения на чистой in-memory H2 с выбранным хранилищем и заполняет его
+ * синтетическими данными: size фильмов, size / 10 пользователей, до 19 лайков на фильм
+ * и по 10 друзей у каждого пользователя.
+ */
+public final class BenchmarkDataset implements AutoCloseable {
+    public static final int FRIENDS_PER_USER = 10;
+
+    private static final int CHUNK_SIZE = 1000;
+
+    private final ConfigurableApplicationContext context;
+    private final int filmCount;
+    private final int userCount;
+    private final int firstFilmId;
+    private final int firstUserId;
+
+    private BenchmarkDataset(ConfigurableApplicationContext context, int filmCount, int userCount,
+                             int firstFilmId, int firstUserId) {
+        this.context = context;
+        this.filmCount = filmCount;
+        this.userCount = userCount;
+        this.firstFilmId = firstFilmId;
+        this.firstUserId = firstUserId;
+    }
+
+    public static BenchmarkDataset start(String storageType, int size) {
+        return start(storageType, size, Map.of());
+    }
+
+    /**
+     * overrides перекрывают настройки по умолчанию: in-memory H2 и приложение без веб-сервера.
+     * Значение null убирает настройку, и тогда действует значение из профиля приложения.
+     */
+    public static BenchmarkDataset start(String storageType, int size, Map<String, String> overrides) {
+        Map<String, String> properties = new LinkedHashMap<>();
+        properties.put("spring.datasource.url", "jdbc:h2:mem:bench-" + storageType + "-" + size
+                + "-" + System.nanoTime() + ";DB_CLOSE_DELAY=-1");
+        properties.put("spring.main.web-application-type", "none");
+        properties.put("spring.h2.console.enabled", "false");
+        properties.put("filmorate.storage.type", storageType);
+        properties.put("logging.level.root", "WARN");
+        properties.put("logging.level.ru.yandex.practicum.filmorate", "WARN");
+        overrides.forEach((name, value) -> {
+            if (value == null) {
+                properties.remove(name);
+            } else {
+                properties.put(name, value);
+            }
+        });
+
+        // Аргументы командной строки, а не properties(): те перекрываются application.properties
+        String[] args = properties.entrySet().stream()
+                .map(property -> "--" + property.getKey() + "=" + property.getValue())
+                .toArray(String[]::new);
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(FilmorateApplication.class)
+                .run(args);
+
+        int userCount = Math.max(size / 10, FRIENDS_PER_USER * 2);
+        int firstUserId = seedUsers(context, userCount);
+        int firstFilmId = seedFilms(context, size);
+        BenchmarkDataset dataset = new BenchmarkDataset(context, size, userCount, firstFilmId, firstUserId);
+        dataset.seedLikes();
+        dataset.seedFriendships();
+        return dataset;
+    }
+
+    public String getProperty(String name) {
+        return context.getEnvironment().getProperty(name);
+    }
+
+    public <T> T getBean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    public int filmId(int index) {
+        return firstFilmId + Math.floorMod(index, filmCount);
+    }
+
+    public int userId(int index) {
+        return firstUserId + Math.floorMod(index, userCount);
+    }
+
+    @Override
+    public void close() {
+        context.close();
+    }
+
+    private static int seedUsers(ConfigurableApplicationContext context, int count) {
+        UserStorage userStorage = context.getBean(UserStorage.class);
+        int firstId = -1;
+        for (int from = 0; from < count; from += CHUNK_SIZE) {
+            List<User> chunk = new ArrayList<>();
+            for (int i = from; i < Math.min(count, from + CHUNK_SIZE); i++) {
+                User user = new User();
+                user.setEmail("bench" + i + "@mail.ru");
+                user.setLogin("bench" + i);
+                user.setName("Bench User " + i);
+                user.setBirthday(LocalDate.of(1970, 1, 1).plusDays(i % 15000));
+                chunk.add(user);
+            }
+            List<User> saved = userStorage.addUsers(chunk);
+            if (firstId < 0) {
+                firstId = saved.get(0).getId();
+            }
+        }
+        return firstId;
+    }
+
+    private static int seedFilms(ConfigurableApplicationContext context, int count) {
+        FilmStorage filmStorage = context.getBean(FilmStorage.class);
+        ReferenceDataCache referenceData = context.getBean(ReferenceDataCache.class);
+        int mpaCount = referenceData.getAllMpa().size();
+        int genreCount = referenceData.getAllGenres().size();
+        int firstId = -1;
+        for (int from = 0; from < count; from += CHUNK_SIZE) {
+            List<Film> chunk = new ArrayList<>();
+            for (int i = from; i < Math.min(count, from + CHUNK_SIZE); i++) {
+                Film film = new Film();
+                film.setName("Фильм " + i);
+                film.setDescription("Синтетический фильм для бенчмарка " + i);
+                film.setReleaseDate(LocalDate.of(1950, 1, 1).plusDays(i % 25000));
+                film.setDuration(60 + i % 120);
+                film.setMpa(referenceData.getMpa(1 + i % mpaCount));
+                Set<Genre> genres = new LinkedHashSet<>();
+                genres.add(referenceData.getGenre(1 + i % genreCount));
+                genres.add(referenceData.getGenre(1 + (i / 7) % genreCount));
+                film.setGenres(genres);
+                chunk.add(film);
+            }
+            List<Film> saved = filmStorage.addFilms(chunk);
+            if (firstId < 0) {
+                firstId = saved.get(0).getId();
+            }
+        }
+        return firstId;
+    }
+
+    // Фильм с индексом i получает i % 20 лайков, поэтому популярность распределена неравномерно
+    private void seedLikes() {
+        if (isDbStorage()) {
+            JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+            List<Object[]> batch = new ArrayList<>();
+            for (int i = 0; i < filmCount; i++) {
+                for (int like = 0; like < i % 20; like++) {
+                    batch.add(new Object[]{userId(i + like), filmId(i)});
+                    if (batch.size() == CHUNK_SIZE * 10) {
+                        jdbcTemplate.batchUpdate("INSERT INTO likes (user_id, film_id) VALUES (?, ?)", batch);
+                        batch.clear();
+                    }
+                }
+            }
+            if (!batch.isEmpty()) {
+                jdbcTemplate.batchUpdate("INSERT INTO likes (user_id, film_id) VALUES (?, ?)", batch);
+            }
+            jdbcTemplate.update("UPDATE films SET like_count = " +
+                    "(SELECT COUNT(*) FROM likes WHERE likes.film_id = films.film_id)");
+            return;
+        }
+        FilmStorage filmStorage = getBean(FilmStorage.class);
+        for (int i = 0; i < filmCount; i++) {
+            for (int like = 0; like < i % 20; like++) {
+                filmStorage.addLike(filmId(i), userId(i + like));
+            }
+        }
+    }
+
+    private void seedFriendships() {
+        if (isDbStorage()) {
+            JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+            List<Object[]> batch = new ArrayList<>();
+            for (int i = 0; i < userCount; i++) {
+                for (int friend = 1; friend <= FRIENDS_PER_USER; friend++) {
+                    batch.add(new Object[]{userId(i), userId(i + friend)});
+                }
+                if (batch.size() >= CHUNK_SIZE * 10) {
+                    jdbcTemplate.batchUpdate("INSERT INTO friendships (user_id, friend_id) VALUES (?, ?)", batch);
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                jdbcTemplate.batchUpdate("INSERT INTO friendships (user_id, friend_id) VALUES (?, ?)", batch);
+            }
+            return;
+        }
+        UserStorage userStorage = getBean(UserStorage.class);
+        for (int i = 0; i < userCount; i++) {
+            for (int friend = 1; friend <= FRIENDS_PER_USER; friend++) {
+                userStorage.addFriend(userId(i), userId(i + friend));
+            }
+        }
+    }
+
+    private boolean isDbStorage() {
+        return !"memory".equals(context.getEnvironment().getProperty("filmorate.storage.type"));
+    }
+}
@@ -0,0 +1,89 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import ru.yandex.practicum.filmorate.dto.FilmDto;
+import ru.yandex.practicum.filmorate.mapper.FilmMapper;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+
+import java.util.Collection;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Горячие пути фильмов на хранилищах db и memory. Для быстрого прогона: -p size=10000.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FilmBenchmark {
+    @Param({"db", "memory"})
+    private String storage;
+
+    @Param({"10000", "100000", "1000000"})
+    private int size;
+
+    private BenchmarkDataset dataset;
+    private FilmService filmService;
+    private FilmStorage filmStorage;
+    private FilmMapper filmMapper;
+    private Film sampleFilm;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dataset = BenchmarkDataset.start(storage, size);
+        filmService = dataset.getBean(FilmService.class);
+        filmStorage = dataset.getBean(FilmStorage.class);
+        filmMapper = dataset.getBean(FilmMapper.class);
+        sampleFilm = filmStorage.getById(dataset.filmId(19));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        dataset.close();
+    }
+
+    @Benchmark
+    public Collection<FilmDto> popularFilms() {
+        return filmService.getPopularFilms(10, null, null);
+    }
+
+    @Benchmark
+    public Film getById() {
+        return filmStorage.getById(dataset.filmId(ThreadLocalRandom.current().nextInt(size)));
+    }
+
+    @Benchmark
+    public FilmDto toDto() {
+        return filmMapper.toDto(sampleFilm);
+    }
+
+    // Весь каталог - дорогой запрос, время меряется в секундах на вызов.
+    // Обходим результат, иначе у memory мерялось бы только получение представления карты
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @Measurement(iterations = 3, time = 5)
+    public void allFilms(Blackhole blackhole) {
+        for (Film film : filmStorage.getAllFilms()) {
+            blackhole.consume(film);
+        }
+    }
+}
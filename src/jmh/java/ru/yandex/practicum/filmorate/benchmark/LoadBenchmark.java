@@ -0,0 +1,108 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Нагрузочный прогон через HTTP: 64 клиента шлют смесь чтений (популярные фильмы, фильм, друзья)
+ * и лайков (20%) в приложение на файловой H2. Сравнивает профиль по умолчанию с prod,
+ * а также пул потоков Tomcat с виртуальными потоками.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(64)
+@Fork(1)
+public class LoadBenchmark {
+    @Param({"default", "prod"})
+    private String profile;
+
+    @Param({"false", "true"})
+    private String virtualThreads;
+
+    @Param({"10000"})
+    private int size;
+
+    private Path dbDirectory;
+    private BenchmarkDataset dataset;
+    private HttpClient client;
+    private String baseUrl;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dbDirectory = Files.createTempDirectory("filmorate-load");
+        Map<String, String> overrides = new HashMap<>();
+        overrides.put("spring.profiles.active", profile);
+        overrides.put("spring.threads.virtual.enabled", virtualThreads);
+        overrides.put("spring.main.web-application-type", "servlet");
+        overrides.put("server.port", "0");
+        overrides.put("filmorate.db.path", dbDirectory.resolve("filmorate").toString());
+        // Файловая БД, пул и логирование берутся из профиля
+        overrides.put("spring.datasource.url", null);
+        overrides.put("logging.level.root", null);
+        overrides.put("logging.level.ru.yandex.practicum.filmorate", null);
+        dataset = BenchmarkDataset.start("db", size, overrides);
+
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        baseUrl = "http://localhost:" + dataset.getProperty("local.server.port");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        dataset.close();
+        try (var files = Files.walk(dbDirectory)) {
+            files.sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public int mixedTraffic() throws IOException, InterruptedException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int roll = random.nextInt(10);
+        int filmId = dataset.filmId(random.nextInt(size));
+        int userId = dataset.userId(random.nextInt(size));
+        if (roll < 3) {
+            return send("GET", "/films/popular?count=10");
+        } else if (roll < 6) {
+            return send("GET", "/films/" + filmId);
+        } else if (roll < 8) {
+            return send("GET", "/users/" + userId + "/friends");
+        } else if (roll == 8) {
+            return send("PUT", "/films/" + filmId + "/like/" + userId);
+        }
+        return send("DELETE", "/films/" + filmId + "/like/" + userId);
+    }
+
+    private int send(String method, String path) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .method(method, HttpRequest.BodyPublishers.noBody())
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+}
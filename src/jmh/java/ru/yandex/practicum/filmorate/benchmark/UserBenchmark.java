@@ -0,0 +1,64 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.UserService;
+
+import java.util.Collection;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Общие друзья и список друзей на хранилищах db и memory.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserBenchmark {
+    @Param({"db", "memory"})
+    private String storage;
+
+    @Param({"10000", "100000", "1000000"})
+    private int size;
+
+    private BenchmarkDataset dataset;
+    private UserService userService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dataset = BenchmarkDataset.start(storage, size);
+        userService = dataset.getBean(UserService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        dataset.close();
+    }
+
+    // Соседние пользователи делят большую часть друзей
+    @Benchmark
+    public Collection<User> commonFriends() {
+        int index = ThreadLocalRandom.current().nextInt(size);
+        return userService.getCommonFriends(dataset.userId(index), dataset.userId(index + 1));
+    }
+
+    @Benchmark
+    public Collection<User> friends() {
+        return userService.getAllFriends(dataset.userId(ThreadLocalRandom.current().nextInt(size)));
+    }
+}
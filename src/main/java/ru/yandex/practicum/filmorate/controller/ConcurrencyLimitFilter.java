@@ -0,0 +1,124 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import ru.yandex.practicum.filmorate.exception.ErrorResponse;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Ограничивает число одновременно обрабатываемых запросов при работе на виртуальных потоках.
+ * Без пула потоков Tomcat число запросов ничем не ограничено, и тысячи виртуальных потоков ждали бы
+ * соединение Hikari до connection-timeout. Поэтому по умолчанию разрешений столько же, сколько соединений
+ * в пуле, остальные запросы дешево ждут в очереди семафора, а при слишком долгом ожидании получают 503.
+ * Асинхронный запрос (потоковая выгрузка через StreamingResponseBody) держит разрешение до завершения
+ * асинхронной обработки: чтение из БД идёт уже после возврата из фильтра.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "spring.threads.virtual.enabled", havingValue = "true")
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+    private final Semaphore permits;
+    private final long queueTimeoutMillis;
+    private final ObjectMapper objectMapper;
+
+    public ConcurrencyLimitFilter(
+            @Value("${filmorate.web.max-concurrent-requests:${spring.datasource.hikari.maximum-pool-size:10}}")
+            int maxConcurrentRequests,
+            @Value("${filmorate.web.queue-timeout-ms:5000}") long queueTimeoutMillis,
+            ObjectMapper objectMapper) {
+        this.permits = new Semaphore(maxConcurrentRequests, true);
+        this.queueTimeoutMillis = queueTimeoutMillis;
+        this.objectMapper = objectMapper;
+        log.info("Одновременно обрабатывается не больше {} запросов", maxConcurrentRequests);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        // Health-check и метрики должны отвечать и под полной нагрузкой
+        return request.getRequestURI().startsWith("/actuator");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(queueTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            log.warn("Запрос {} {} отклонён: превышено время ожидания в очереди", request.getMethod(),
+                    request.getRequestURI());
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setHeader("Retry-After", "1");
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+            objectMapper.writeValue(response.getOutputStream(),
+                    new ErrorResponse("error", "Сервер перегружен, повторите запрос позже"));
+            return;
+        }
+        boolean releaseNow = true;
+        try {
+            chain.doFilter(request, response);
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new PermitReleasingListener());
+                releaseNow = false;
+            }
+        } finally {
+            if (releaseNow) {
+                permits.release();
+            }
+        }
+    }
+
+    // Отпускает разрешение один раз, чем бы ни закончилась асинхронная обработка
+    private class PermitReleasingListener implements AsyncListener {
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            release();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            release();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            release();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            // Новый цикл асинхронной обработки: слушатель нужно зарегистрировать заново
+            event.getAsyncContext().addListener(this);
+        }
+
+        private void release() {
+            if (released.compareAndSet(false, true)) {
+                permits.release();
+            }
+        }
+    }
+}
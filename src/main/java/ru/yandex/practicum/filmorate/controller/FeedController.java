@@ -0,0 +1,24 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import ru.yandex.practicum.filmorate.model.Event;
+import ru.yandex.practicum.filmorate.service.FeedService;
+
+import java.util.List;
+
+@RequiredArgsConstructor
+@RestController
+public class FeedController {
+    private final FeedService feedService;
+
+    @GetMapping("/users/{id}/feed")
+    public List<Event> getFeed(@PathVariable Integer id,
+                               @RequestParam(required = false) Long after,
+                               @RequestParam(required = false) Integer limit) {
+        return feedService.getFeed(id, after, limit);
+    }
+}
@@ -3,10 +3,13 @@ package ru.yandex.practicum.filmorate.controller;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.yandex.practicum.filmorate.dto.FilmDto;
 import ru.yandex.practicum.filmorate.service.FilmService;
 
 import java.util.Collection;
+import java.util.List;
 
 @RequiredArgsConstructor
 @RestController
@@ -14,10 +17,25 @@ import java.util.Collection;
 public class FilmController {
 
     private final FilmService filmService;
+    private final NdjsonWriter ndjsonWriter;
 
+    // С fields отдаются только перечисленные поля фильма, например ?fields=id,name,mpa
     @GetMapping
-    public Collection<FilmDto> getAllFilms() {
-        return filmService.getAllFilms();
+    public Collection<?> getAllFilms(@RequestParam(required = false) Integer after,
+                                     @RequestParam(required = false) Integer limit,
+                                     @RequestParam(required = false) String fields) {
+        if (fields != null) {
+            return filmService.getFilmsProjection(after, limit, fields);
+        }
+        if (after == null && limit == null) {
+            return filmService.getAllFilms();
+        }
+        return filmService.getFilmsPage(after, limit);
+    }
+
+    @GetMapping(value = "/stream", produces = NdjsonWriter.MEDIA_TYPE)
+    public StreamingResponseBody streamAllFilms() {
+        return ndjsonWriter.stream(filmService::forEachFilm);
     }
 
     @PostMapping
@@ -36,8 +54,19 @@ public class FilmController {
         return filmService.updateFilm(filmDto);
     }
 
+    @GetMapping("/search")
+    public List<FilmDto> searchFilms(@RequestParam String query,
+                                     @RequestParam(defaultValue = "title,description") List<String> by,
+                                     @RequestParam(required = false) Integer limit) {
+        return filmService.searchFilms(query, by, limit);
+    }
+
+    // Версия проверяется до сборки фильма: неизменённый фильм отдаётся как 304 без тела
     @GetMapping("/{id}")
-    public FilmDto getFilmById(@PathVariable Integer id) {
+    public FilmDto getFilmById(@PathVariable Integer id, WebRequest request) {
+        if (request.checkNotModified(Long.toString(filmService.getVersion(id)))) {
+            return null;
+        }
         return filmService.getById(id);
     }
 
@@ -54,7 +83,13 @@ public class FilmController {
     }
 
     @GetMapping("/popular")
-    public Collection<FilmDto> getPopularFilms(@RequestParam(defaultValue = "10") Integer count) {
-        return filmService.getPopularFilms(count);
+    public Collection<?> getPopularFilms(@RequestParam(defaultValue = "10") Integer count,
+                                         @RequestParam(required = false) Integer genreId,
+                                         @RequestParam(required = false) Integer year,
+                                         @RequestParam(required = false) String fields) {
+        if (fields != null) {
+            return filmService.getPopularFilmsProjection(count, genreId, year, fields);
+        }
+        return filmService.getPopularFilms(count, genreId, year);
     }
 }
\ No newline at end of file
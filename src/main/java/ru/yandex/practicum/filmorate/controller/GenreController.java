@@ -4,6 +4,7 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.storage.GenreStorage;
 
@@ -15,12 +16,20 @@ public class GenreController {
     private final GenreStorage genreStorage;
 
     @GetMapping("/genres")
-    public Collection<Genre> getAllGenres() {
+    public Collection<Genre> getAllGenres(WebRequest request) {
+        if (request.checkNotModified(Long.toString(genreStorage.getVersion()))) {
+            return null;
+        }
         return genreStorage.getAllGenres();
     }
 
     @GetMapping("/genres/{id}")
-    public Genre getGenreById(@PathVariable int id) {
-        return genreStorage.getGenreById(id);
+    public Genre getGenreById(@PathVariable int id, WebRequest request) {
+        // Несуществующий жанр должен дать 404, а не 304
+        Genre genre = genreStorage.getGenreById(id);
+        if (request.checkNotModified(Long.toString(genreStorage.getVersion()))) {
+            return null;
+        }
+        return genre;
     }
 }
@@ -0,0 +1,30 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+import ru.yandex.practicum.filmorate.dto.ImportResult;
+import ru.yandex.practicum.filmorate.service.ImportService;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+@RequiredArgsConstructor
+@RestController
+public class ImportController {
+    private final ImportService importService;
+
+    @PostMapping(value = "/films/import", consumes = {NdjsonWriter.MEDIA_TYPE, ImportService.CSV_MEDIA_TYPE})
+    public ImportResult importFilms(@RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+                                    InputStream body) throws IOException {
+        return importService.importFilms(body, contentType);
+    }
+
+    @PostMapping(value = "/users/import", consumes = {NdjsonWriter.MEDIA_TYPE, ImportService.CSV_MEDIA_TYPE})
+    public ImportResult importUsers(@RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+                                    InputStream body) throws IOException {
+        return importService.importUsers(body, contentType);
+    }
+}
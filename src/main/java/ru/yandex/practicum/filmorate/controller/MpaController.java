@@ -2,6 +2,7 @@ package ru.yandex.practicum.filmorate.controller;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import ru.yandex.practicum.filmorate.dto.MpaDto;
 import ru.yandex.practicum.filmorate.service.MpaService;
 
@@ -14,12 +15,20 @@ public class MpaController {
     private final MpaService mpaService;
 
     @GetMapping("/{id}")
-    public MpaDto getMpaById(@PathVariable Integer id) {
-        return mpaService.getMpaDtoById(id);
+    public MpaDto getMpaById(@PathVariable Integer id, WebRequest request) {
+        // Несуществующий рейтинг должен дать 404, а не 304
+        MpaDto mpa = mpaService.getMpaDtoById(id);
+        if (request.checkNotModified(Long.toString(mpaService.getVersion()))) {
+            return null;
+        }
+        return mpa;
     }
 
     @GetMapping
-    public Collection<MpaDto> getAllMpa() {
+    public Collection<MpaDto> getAllMpa(WebRequest request) {
+        if (request.checkNotModified(Long.toString(mpaService.getVersion()))) {
+            return null;
+        }
         return mpaService.getAllDto();
     }
 }
\ No newline at end of file
@@ -0,0 +1,30 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+
+// Пишет элементы в ответ построчно в формате NDJSON по мере их чтения из хранилища
+@Component
+@RequiredArgsConstructor
+public class NdjsonWriter {
+    public static final String MEDIA_TYPE = "application/x-ndjson";
+
+    private final ObjectMapper objectMapper;
+
+    public <T> StreamingResponseBody stream(Consumer<Consumer<T>> source) {
+        return out -> source.accept(item -> {
+            try {
+                out.write(objectMapper.writeValueAsBytes(item));
+                out.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+}
@@ -0,0 +1,23 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import ru.yandex.practicum.filmorate.dto.FilmDto;
+import ru.yandex.practicum.filmorate.service.RecommendationService;
+
+import java.util.List;
+
+@RequiredArgsConstructor
+@RestController
+public class RecommendationController {
+    private final RecommendationService recommendationService;
+
+    @GetMapping("/users/{id}/recommendations")
+    public List<FilmDto> getRecommendations(@PathVariable Integer id,
+                                            @RequestParam(required = false) Integer limit) {
+        return recommendationService.getRecommendations(id, limit);
+    }
+}
@@ -3,6 +3,8 @@ package ru.yandex.practicum.filmorate.controller;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.service.UserService;
 
@@ -14,10 +16,20 @@ import java.util.Collection;
 public class UserController {
 
     private final UserService userService;
+    private final NdjsonWriter ndjsonWriter;
 
     @GetMapping
-    public Collection<User> getAllUsers() {
-        return userService.getAllUsers();
+    public Collection<User> getAllUsers(@RequestParam(required = false) Integer after,
+                                        @RequestParam(required = false) Integer limit) {
+        if (after == null && limit == null) {
+            return userService.getAllUsers();
+        }
+        return userService.getUsersPage(after, limit);
+    }
+
+    @GetMapping(value = "/stream", produces = NdjsonWriter.MEDIA_TYPE)
+    public StreamingResponseBody streamAllUsers() {
+        return ndjsonWriter.stream(userService::forEachUser);
     }
 
     @PostMapping
@@ -42,6 +54,13 @@ public class UserController {
         return userService.getAllFriends(idUser);
     }
 
+    // Заявки в друзья, ожидающие ответа пользователя
+    @GetMapping("/{idUser}/friends/requests")
+    public Collection<User> getFriendRequests(@PathVariable Integer idUser) {
+        userService.getById(idUser);
+        return userService.getFriendRequests(idUser);
+    }
+
     @GetMapping("/{idUser}/friends/common/{otherId}")
     public Collection<User> getCommonFriends(@PathVariable Integer idUser, @PathVariable Integer otherId) {
         return userService.getCommonFriends(idUser, otherId);
@@ -52,13 +71,27 @@ public class UserController {
         userService.addFriend(idUser, idFriend);
     }
 
+    @PutMapping("/{idUser}/friends/{idFriend}/confirm")
+    public void confirmFriend(@PathVariable Integer idUser, @PathVariable Integer idFriend) {
+        userService.confirmFriend(idUser, idFriend);
+    }
+
+    @PutMapping("/{idUser}/friends/{idFriend}/decline")
+    public void declineFriend(@PathVariable Integer idUser, @PathVariable Integer idFriend) {
+        userService.declineFriend(idUser, idFriend);
+    }
+
     @DeleteMapping("/{idUser}/friends/{idFriend}")
     public void removeFriend(@PathVariable Integer idUser, @PathVariable Integer idFriend) {
         userService.removeFriend(idUser, idFriend);
     }
 
+    // Версия проверяется до сборки пользователя: неизменённый пользователь отдаётся как 304 без тела
     @GetMapping("/{id}")
-    public User getUserById(@PathVariable Integer id) {
+    public User getUserById(@PathVariable Integer id, WebRequest request) {
+        if (request.checkNotModified(Long.toString(userService.getVersion(id)))) {
+            return null;
+        }
         return userService.getById(id);
     }
 }
\ No newline at end of file
@@ -32,6 +32,9 @@ public class FilmDto {
     @JsonProperty("mpa")
     private MpaDto mpa;
 
+    @JsonProperty(value = "likeCount", access = JsonProperty.Access.READ_ONLY)
+    private int likeCount;
+
     @JsonProperty("genres")
     private Set<GenreDto> genres = new HashSet<>();
 
@@ -0,0 +1,36 @@
+package ru.yandex.practicum.filmorate.dto;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class ImportResult {
+    private static final int MAX_REPORTED_ERRORS = 100;
+
+    private int imported;
+    private int failed;
+    private List<RowError> errors = new ArrayList<>();
+
+    // Счётчик ошибок растёт всегда, а подробности сохраняются только для первых строк
+    public void addError(long line, String message) {
+        failed++;
+        if (errors.size() < MAX_REPORTED_ERRORS) {
+            RowError error = new RowError();
+            error.setLine(line);
+            error.setMessage(message);
+            errors.add(error);
+        }
+    }
+
+    public void addImported(int count) {
+        imported += count;
+    }
+
+    @Data
+    public static class RowError {
+        private long line;
+        private String message;
+    }
+}
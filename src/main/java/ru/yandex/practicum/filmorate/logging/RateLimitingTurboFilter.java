@@ -0,0 +1,49 @@
+package ru.yandex.practicum.filmorate.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import org.slf4j.Marker;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Пропускает не больше maxPerSecond сообщений в секунду на каждый шаблон сообщения уровня ниже WARN.
+ * Под нагрузкой горячие пути не засыпают лог одинаковыми строками, а предупреждения и ошибки проходят всегда.
+ */
+public class RateLimitingTurboFilter extends TurboFilter {
+    private final ConcurrentMap<String, Window> windows = new ConcurrentHashMap<>();
+    private int maxPerSecond = 20;
+
+    public void setMaxPerSecond(int maxPerSecond) {
+        this.maxPerSecond = maxPerSecond;
+    }
+
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params,
+                              Throwable t) {
+        // Проверки isXxxEnabled приходят без шаблона, выключенные уровни не должны тратить лимит
+        if (!isStarted() || format == null || level.isGreaterOrEqual(Level.WARN)
+                || !level.isGreaterOrEqual(logger.getEffectiveLevel())) {
+            return FilterReply.NEUTRAL;
+        }
+        long second = System.currentTimeMillis() / 1000;
+        Window window = windows.computeIfAbsent(format, key -> new Window());
+        return window.tryAcquire(second, maxPerSecond) ? FilterReply.NEUTRAL : FilterReply.DENY;
+    }
+
+    private static final class Window {
+        private long second;
+        private int count;
+
+        synchronized boolean tryAcquire(long now, int limit) {
+            if (now != second) {
+                second = now;
+                count = 0;
+            }
+            return ++count <= limit;
+        }
+    }
+}
@@ -3,10 +3,13 @@ package ru.yandex.practicum.filmorate.mapper;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.dto.FilmDto;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmField;
 import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.model.Mpa;
 
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.Map;
 import java.util.Set;
 
 @Component
@@ -48,12 +51,13 @@ public class FilmMapper {
         filmDto.setDescription(film.getDescription());
         filmDto.setReleaseDate(film.getReleaseDate());
         filmDto.setDuration(film.getDuration());
+        filmDto.setLikeCount(film.getLikeCount());
 
-        // MPA
+        // MPA: как и в MpaMapper, клиентам отдаётся код рейтинга
         if (film.getMpa() != null) {
             FilmDto.MpaDto mpaDto = new FilmDto.MpaDto();
             mpaDto.setId(film.getMpa().getId());
-            mpaDto.setName(film.getMpa().getName());
+            mpaDto.setName(film.getMpa().getCode());
             filmDto.setMpa(mpaDto);
         }
 
@@ -71,4 +75,24 @@ public class FilmMapper {
 
         return filmDto;
     }
-}
\ No newline at end of file
+
+    // Только запрошенные поля, под теми же именами и в том же виде, что в FilmDto
+    public Map<String, Object> toProjection(Film film, Set<FilmField> fields) {
+        FilmDto filmDto = toDto(film);
+        Map<String, Object> projection = new LinkedHashMap<>();
+        for (FilmField field : fields) {
+            Object value = switch (field) {
+                case ID -> filmDto.getId();
+                case NAME -> filmDto.getName();
+                case DESCRIPTION -> filmDto.getDescription();
+                case RELEASE_DATE -> filmDto.getReleaseDate();
+                case DURATION -> filmDto.getDuration();
+                case MPA -> filmDto.getMpa();
+                case LIKE_COUNT -> filmDto.getLikeCount();
+                case GENRES -> filmDto.getGenres();
+            };
+            projection.put(field.getJsonName(), value);
+        }
+        return projection;
+    }
+}
@@ -0,0 +1,83 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+/**
+ * Время, ошибки, число SQL-запросов и строк для каждого публичного метода хранилищ и сервисов.
+ * Метрики: filmorate.storage.calls / filmorate.service.calls (таймеры с гистограммой),
+ * *.errors (счётчики по типу исключения), filmorate.storage.sql.statements и filmorate.storage.sql.rows.
+ */
+@Aspect
+@Component
+public class CallMetricsAspect {
+    private final SqlStatistics sqlStatistics;
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+
+    public CallMetricsAspect(SqlStatistics sqlStatistics, ObjectProvider<MeterRegistry> meterRegistry) {
+        this.sqlStatistics = sqlStatistics;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Around("execution(public * ru.yandex.practicum.filmorate.storage.*Storage+.*(..))")
+    public Object timeStorageCall(ProceedingJoinPoint joinPoint) throws Throwable {
+        return timeCall("filmorate.storage", joinPoint, true);
+    }
+
+    @Around("execution(public * ru.yandex.practicum.filmorate.service.*Service.*(..))")
+    public Object timeServiceCall(ProceedingJoinPoint joinPoint) throws Throwable {
+        return timeCall("filmorate.service", joinPoint, false);
+    }
+
+    private Object timeCall(String prefix, ProceedingJoinPoint joinPoint, boolean countSql) throws Throwable {
+        MeterRegistry registry = meterRegistry.getIfAvailable();
+        if (registry == null) {
+            return joinPoint.proceed();
+        }
+
+        String className = joinPoint.getTarget().getClass().getSimpleName();
+        String methodName = joinPoint.getSignature().getName();
+        SqlStatistics.Snapshot start = sqlStatistics.snapshot();
+        Timer.Sample sample = Timer.start(registry);
+        String exception = "none";
+        try {
+            return joinPoint.proceed();
+        } catch (Throwable e) {
+            exception = e.getClass().getSimpleName();
+            Counter.builder(prefix + ".errors")
+                    .tag("class", className)
+                    .tag("method", methodName)
+                    .tag("exception", exception)
+                    .register(registry)
+                    .increment();
+            throw e;
+        } finally {
+            sample.stop(Timer.builder(prefix + ".calls")
+                    .tag("class", className)
+                    .tag("method", methodName)
+                    .tag("exception", exception)
+                    .publishPercentileHistogram()
+                    .register(registry));
+            if (countSql) {
+                SqlStatistics.Snapshot sql = sqlStatistics.snapshot().since(start);
+                DistributionSummary.builder(prefix + ".sql.statements")
+                        .tag("class", className)
+                        .tag("method", methodName)
+                        .register(registry)
+                        .record(sql.statements());
+                DistributionSummary.builder(prefix + ".sql.rows")
+                        .tag("class", className)
+                        .tag("method", methodName)
+                        .register(registry)
+                        .record(sql.rows());
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Оборачивает DataSource приложения: каждое выполнение запроса и каждая строка результата
+ * попадают в {@link SqlStatistics}. Пакет запросов (executeBatch) считается одним обращением к БД.
+ */
+@Component
+public class MeteredDataSourcePostProcessor implements BeanPostProcessor {
+    private final ObjectProvider<SqlStatistics> sqlStatistics;
+
+    public MeteredDataSourcePostProcessor(ObjectProvider<SqlStatistics> sqlStatistics) {
+        this.sqlStatistics = sqlStatistics;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource dataSource && !(bean instanceof MeteredDataSource)) {
+            return new MeteredDataSource(dataSource);
+        }
+        return bean;
+    }
+
+    private class MeteredDataSource extends DelegatingDataSource {
+        MeteredDataSource(DataSource target) {
+            super(target);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            return proxy(Connection.class, super.getConnection(), this::onConnectionCall);
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            return proxy(Connection.class, super.getConnection(username, password), this::onConnectionCall);
+        }
+
+        private Object onConnectionCall(Method method, Object result) {
+            return switch (result) {
+                case CallableStatement statement -> proxy(CallableStatement.class, statement, this::onStatementCall);
+                case PreparedStatement statement -> proxy(PreparedStatement.class, statement, this::onStatementCall);
+                case Statement statement -> proxy(Statement.class, statement, this::onStatementCall);
+                case null, default -> result;
+            };
+        }
+
+        private Object onStatementCall(Method method, Object result) {
+            if (method.getName().startsWith("execute")) {
+                sqlStatistics.getObject().statementExecuted();
+            }
+            if (result instanceof ResultSet resultSet) {
+                return proxy(ResultSet.class, resultSet, this::onResultSetCall);
+            }
+            return result;
+        }
+
+        private Object onResultSetCall(Method method, Object result) {
+            if (method.getName().equals("next") && Boolean.TRUE.equals(result)) {
+                sqlStatistics.getObject().rowsFetched(1);
+            }
+            return result;
+        }
+
+        private <T> T proxy(Class<T> type, T target, ResultHandler handler) {
+            InvocationHandler invocationHandler = (proxy, method, args) -> {
+                Object result;
+                try {
+                    result = method.invoke(target, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+                return handler.handle(method, result);
+            };
+            return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, invocationHandler));
+        }
+    }
+
+    @FunctionalInterface
+    private interface ResultHandler {
+        Object handle(Method method, Object result);
+    }
+}
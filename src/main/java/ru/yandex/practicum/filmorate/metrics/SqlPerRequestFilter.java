@@ -0,0 +1,57 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+
+/**
+ * Записывает число SQL-запросов и прочитанных строк на каждый HTTP-запрос с тегом шаблона URI.
+ * По гистограмме filmorate.http.sql.statements на дашборде сразу видно N+1 у конкретного эндпоинта.
+ * Потоковые ответы дописываются в другом потоке, их запросы попадают только в общие счётчики.
+ */
+@Component
+public class SqlPerRequestFilter extends OncePerRequestFilter {
+    private final SqlStatistics sqlStatistics;
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+
+    public SqlPerRequestFilter(SqlStatistics sqlStatistics, ObjectProvider<MeterRegistry> meterRegistry) {
+        this.sqlStatistics = sqlStatistics;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        SqlStatistics.Snapshot start = sqlStatistics.snapshot();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            MeterRegistry registry = meterRegistry.getIfAvailable();
+            if (registry != null) {
+                SqlStatistics.Snapshot used = sqlStatistics.snapshot().since(start);
+                Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+                String uri = pattern != null ? pattern.toString() : "UNKNOWN";
+                record(registry, "filmorate.http.sql.statements", request.getMethod(), uri, used.statements());
+                record(registry, "filmorate.http.sql.rows", request.getMethod(), uri, used.rows());
+            }
+        }
+    }
+
+    private void record(MeterRegistry registry, String name, String method, String uri, long value) {
+        DistributionSummary.builder(name)
+                .tag("method", method)
+                .tag("uri", uri)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(value);
+    }
+}
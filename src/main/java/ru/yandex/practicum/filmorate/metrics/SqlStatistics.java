@@ -0,0 +1,65 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+/**
+ * Счётчики выполненных SQL-запросов и прочитанных строк. Помимо общих счётчиков в реестре метрик
+ * ведутся монотонные счётчики текущего потока: разница двух снимков показывает, сколько запросов
+ * ушло в БД за HTTP-запрос или за вызов метода хранилища.
+ */
+@Component
+public class SqlStatistics {
+    private final ThreadLocal<long[]> threadCounters = ThreadLocal.withInitial(() -> new long[2]);
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+    private volatile Counter statementCounter;
+    private volatile Counter rowCounter;
+
+    public SqlStatistics(ObjectProvider<MeterRegistry> meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    public Snapshot snapshot() {
+        long[] counters = threadCounters.get();
+        return new Snapshot(counters[0], counters[1]);
+    }
+
+    void statementExecuted() {
+        threadCounters.get()[0]++;
+        Counter counter = statementCounter;
+        if (counter == null) {
+            counter = statementCounter = register("filmorate.sql.statements", "SQL-запросы, отправленные в БД");
+        }
+        if (counter != null) {
+            counter.increment();
+        }
+    }
+
+    void rowsFetched(int rows) {
+        threadCounters.get()[1] += rows;
+        Counter counter = rowCounter;
+        if (counter == null) {
+            counter = rowCounter = register("filmorate.sql.rows", "Строки, прочитанные из результатов запросов");
+        }
+        if (counter != null) {
+            counter.increment(rows);
+        }
+    }
+
+    // Реестр берётся лениво: в тестовых срезах без метрик счётчики просто не регистрируются
+    private Counter register(String name, String description) {
+        MeterRegistry registry = meterRegistry.getIfAvailable();
+        if (registry == null) {
+            return null;
+        }
+        return Counter.builder(name).description(description).register(registry);
+    }
+
+    public record Snapshot(long statements, long rows) {
+        public Snapshot since(Snapshot start) {
+            return new Snapshot(statements - start.statements, rows - start.rows);
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package ru.yandex.practicum.filmorate.model;
+
+/**
+ * Событие ленты: пользователь userId добавил или убрал сущность entityId - фильм для лайка,
+ * пользователя для дружбы. timestamp - время события в миллисекундах.
+ */
+public record Event(long eventId, int userId, EventType eventType, EventOperation operation, int entityId,
+                    long timestamp) {
+}
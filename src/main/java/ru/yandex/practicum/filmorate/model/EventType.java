@@ -0,0 +1,9 @@
+package ru.yandex.practicum.filmorate.model;
+
+/**
+ * Что изменилось в событии ленты: лайк фильму или список друзей.
+ */
+public enum EventType {
+    LIKE,
+    FRIEND
+}
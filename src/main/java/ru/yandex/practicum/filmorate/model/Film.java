@@ -1,5 +1,7 @@
 package ru.yandex.practicum.filmorate.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Positive;
 import jakarta.validation.constraints.Size;
@@ -24,8 +26,15 @@ public class Film {
     @Positive(message = "Продолжительность фильма должна быть положительной")
     private Integer duration;
 
-    private Set<Integer> likes = new HashSet<>();
+    @JsonDeserialize(as = IntSet.class)
+    private Set<Integer> likes = new IntSet();
+    // Денормализованное число лайков, хранится в films.like_count
+    private int likeCount;
     private Set<Genre> genres = new HashSet<>();
 
     private Mpa mpa;
+
+    // Растёт при каждом изменении фильма, его жанров или лайков, используется как ETag
+    @JsonIgnore
+    private long version;
 }
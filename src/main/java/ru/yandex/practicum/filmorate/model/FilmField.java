@@ -0,0 +1,53 @@
+package ru.yandex.practicum.filmorate.model;
+
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Поля фильма, которые можно запросить параметром fields в списках фильмов.
+ * Имена совпадают с полями JSON у FilmDto; id отдаётся всегда.
+ */
+public enum FilmField {
+    ID("id"),
+    NAME("name"),
+    DESCRIPTION("description"),
+    RELEASE_DATE("releaseDate"),
+    DURATION("duration"),
+    MPA("mpa"),
+    LIKE_COUNT("likeCount"),
+    GENRES("genres");
+
+    private final String jsonName;
+
+    FilmField(String jsonName) {
+        this.jsonName = jsonName;
+    }
+
+    public String getJsonName() {
+        return jsonName;
+    }
+
+    // Разбирает список через запятую, например "id,name,mpa"
+    public static Set<FilmField> parse(String fields) {
+        Set<FilmField> result = EnumSet.of(ID);
+        for (String name : fields.split(",")) {
+            String trimmed = name.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            result.add(byJsonName(trimmed));
+        }
+        return result;
+    }
+
+    private static FilmField byJsonName(String name) {
+        for (FilmField field : values()) {
+            if (field.jsonName.equals(name)) {
+                return field;
+            }
+        }
+        throw new ValidationException("Неизвестное поле фильма: " + name);
+    }
+}
@@ -0,0 +1,11 @@
+package ru.yandex.practicum.filmorate.model;
+
+/**
+ * Состояние дружбы пары пользователей. Заявку видит в своём списке друзей только её автор,
+ * подтверждённую дружбу - оба, отклонённую - никто.
+ */
+public enum FriendshipStatus {
+    PENDING,
+    CONFIRMED,
+    DECLINED
+}
@@ -0,0 +1,172 @@
+package ru.yandex.practicum.filmorate.model;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.IntConsumer;
+
+/**
+ * Компактное множество id на отсортированном массиве int: около 4 байт на элемент вместо
+ * 40+ у HashSet с упакованными Integer. Поиск двоичный, добавление по возрастанию - за O(1).
+ * Не потокобезопасно. В JSON сериализуется обычным массивом чисел.
+ */
+public class IntSet extends AbstractSet<Integer> {
+    private static final int[] EMPTY = new int[0];
+
+    private int[] values;
+    private int size;
+    private int modCount;
+
+    public IntSet() {
+        values = EMPTY;
+    }
+
+    public IntSet(int expectedSize) {
+        values = expectedSize > 0 ? new int[expectedSize] : EMPTY;
+    }
+
+    public IntSet(Collection<Integer> source) {
+        this(source.size());
+        if (source instanceof IntSet intSet) {
+            System.arraycopy(intSet.values, 0, values, 0, intSet.size);
+            size = intSet.size;
+        } else {
+            source.forEach(this::add);
+        }
+    }
+
+    public static IntSet of(int... values) {
+        IntSet set = new IntSet(values.length);
+        for (int value : values) {
+            set.add(value);
+        }
+        return set;
+    }
+
+    public boolean add(int value) {
+        // Данные из БД обычно приходят по возрастанию - тогда обходимся без двоичного поиска
+        if (size == 0 || values[size - 1] < value) {
+            ensureCapacity(size + 1);
+            values[size++] = value;
+            modCount++;
+            return true;
+        }
+        int index = Arrays.binarySearch(values, 0, size, value);
+        if (index >= 0) {
+            return false;
+        }
+        int insertAt = -index - 1;
+        ensureCapacity(size + 1);
+        System.arraycopy(values, insertAt, values, insertAt + 1, size - insertAt);
+        values[insertAt] = value;
+        size++;
+        modCount++;
+        return true;
+    }
+
+    public boolean contains(int value) {
+        return Arrays.binarySearch(values, 0, size, value) >= 0;
+    }
+
+    public boolean remove(int value) {
+        int index = Arrays.binarySearch(values, 0, size, value);
+        if (index < 0) {
+            return false;
+        }
+        System.arraycopy(values, index + 1, values, index, size - index - 1);
+        size--;
+        modCount++;
+        return true;
+    }
+
+    public void forEachInt(IntConsumer action) {
+        for (int i = 0; i < size; i++) {
+            action.accept(values[i]);
+        }
+    }
+
+    public int[] toIntArray() {
+        return Arrays.copyOf(values, size);
+    }
+
+    @Override
+    public boolean add(Integer value) {
+        return add(value.intValue());
+    }
+
+    @Override
+    public boolean contains(Object value) {
+        return value instanceof Integer intValue && contains(intValue.intValue());
+    }
+
+    @Override
+    public boolean remove(Object value) {
+        return value instanceof Integer intValue && remove(intValue.intValue());
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        size = 0;
+        modCount++;
+    }
+
+    @Override
+    public Iterator<Integer> iterator() {
+        return new Iterator<>() {
+            private int next;
+            private int expectedModCount = modCount;
+
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @Override
+            public Integer next() {
+                if (expectedModCount != modCount) {
+                    throw new ConcurrentModificationException();
+                }
+                if (next >= size) {
+                    throw new NoSuchElementException();
+                }
+                return values[next++];
+            }
+
+            @Override
+            public void remove() {
+                if (next == 0) {
+                    throw new IllegalStateException();
+                }
+                if (expectedModCount != modCount) {
+                    throw new ConcurrentModificationException();
+                }
+                IntSet.this.remove(values[--next]);
+                expectedModCount = modCount;
+            }
+        };
+    }
+
+    @Override
+    public int hashCode() {
+        // Совпадает с AbstractSet.hashCode: хеш Integer равен самому числу
+        int hash = 0;
+        for (int i = 0; i < size; i++) {
+            hash += values[i];
+        }
+        return hash;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > values.length) {
+            values = Arrays.copyOf(values, Math.max(capacity, Math.max(4, values.length + (values.length >> 1))));
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package ru.yandex.practicum.filmorate.model;
+
+import java.util.Collection;
+
+/**
+ * Множество id одной сущности (лайки фильма, друзья пользователя), которое меняется на месте,
+ * без копирования массива на каждую запись. Читателям отдаётся неизменяемый снимок: он делается
+ * один раз при первом чтении после изменения и дальше переиспользуется.
+ */
+public final class SnapshotIntSet {
+    private final IntSet values;
+    // null - снимок устарел и будет сделан при следующем чтении
+    private volatile IntSet snapshot;
+
+    public SnapshotIntSet(Collection<Integer> source) {
+        values = source != null ? new IntSet(source) : new IntSet();
+    }
+
+    public synchronized boolean add(int value) {
+        return changed(values.add(value));
+    }
+
+    public synchronized boolean remove(int value) {
+        return changed(values.remove(value));
+    }
+
+    public synchronized int size() {
+        return values.size();
+    }
+
+    // Снимок общий для всех читателей, менять его нельзя
+    public IntSet snapshot() {
+        IntSet current = snapshot;
+        if (current != null) {
+            return current;
+        }
+        synchronized (this) {
+            if (snapshot == null) {
+                snapshot = new IntSet(values);
+            }
+            return snapshot;
+        }
+    }
+
+    private boolean changed(boolean changed) {
+        if (changed) {
+            snapshot = null;
+        }
+        return changed;
+    }
+}
@@ -1,11 +1,12 @@
 package ru.yandex.practicum.filmorate.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotBlank;
 import lombok.Data;
 
 import java.time.LocalDate;
-import java.util.HashSet;
 import java.util.Set;
 
 @Data
@@ -18,5 +19,9 @@ public class User {
     String login;
     String name;
     LocalDate birthday;
-    Set<Integer> friends = new HashSet<>();
+    @JsonDeserialize(as = IntSet.class)
+    Set<Integer> friends = new IntSet();
+    // Растёт при каждом изменении пользователя или его списка друзей, используется как ETag
+    @JsonIgnore
+    long version;
 }
@@ -0,0 +1,38 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.Event;
+import ru.yandex.practicum.filmorate.model.IntSet;
+import ru.yandex.practicum.filmorate.storage.EventStorage;
+import ru.yandex.practicum.filmorate.storage.UserStorage;
+
+import java.util.List;
+
+/**
+ * Лента пользователя: его события и события его друзей по возрастанию id.
+ * Следующая страница запрашивается с after = id последнего полученного события.
+ */
+@Service
+@RequiredArgsConstructor
+public class FeedService {
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
+
+    private final UserStorage userStorage;
+    private final EventStorage eventStorage;
+
+    public List<Event> getFeed(int userId, Long after, Integer limit) {
+        long afterEventId = after != null ? after : 0;
+        int pageSize = limit != null ? limit : DEFAULT_PAGE_SIZE;
+        if (pageSize <= 0 || pageSize > MAX_PAGE_SIZE) {
+            throw new ValidationException("Размер страницы должен быть от 1 до " + MAX_PAGE_SIZE);
+        }
+
+        // Друзья берутся из пользователя, который обычно уже лежит в кэше
+        IntSet userIds = new IntSet(userStorage.getById(userId).getFriends());
+        userIds.add(userId);
+        return eventStorage.getEvents(userIds, afterEventId, pageSize);
+    }
+}
@@ -0,0 +1,255 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmLike;
+import ru.yandex.practicum.filmorate.model.SnapshotIntSet;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.LikesSavedEvent;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Инвертированный индекс по названиям и описаниям фильмов: слово -> id фильмов. Слова хранятся
+ * в отсортированной карте, поэтому поиск по префиксу - это диапазон ключей, и его стоимость зависит
+ * от числа совпадений, а не от размера каталога. Строится из хранилища при старте и обновляется
+ * при добавлении и изменении фильмов. Множества id меняются на месте, без копирования на каждый фильм,
+ * а поиск читает их неизменяемые снимки.
+ * Для каждого фильма индекс держит и число лайков: при равной релевантности выше популярный фильм,
+ * и лучшие результаты выбираются без загрузки всех найденных фильмов.
+ */
+@Slf4j
+@Component
+public class FilmSearchIndex {
+    private static final int BUILD_CHUNK_SIZE = 500;
+
+    public enum Field {
+        TITLE, DESCRIPTION
+    }
+
+    public record Hit(int filmId, int score, int likeCount) {
+    }
+
+    // Сначала релевантные, при равной релевантности - популярные, затем по id
+    private static final Comparator<Hit> RANKING = Comparator.comparingInt(Hit::score).reversed()
+            .thenComparing(Comparator.comparingInt(Hit::likeCount).reversed())
+            .thenComparingInt(Hit::filmId);
+
+    private final FilmStorage filmStorage;
+    private final Map<Field, ConcurrentNavigableMap<String, SnapshotIntSet>> filmsByToken = new EnumMap<>(Field.class);
+    // Слова, под которыми фильм сейчас лежит в индексе: нужны, чтобы убрать старые слова при изменении
+    private final ConcurrentMap<Integer, Map<Field, Set<String>>> tokensByFilm = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Integer, Integer> likeCounts = new ConcurrentHashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile boolean built;
+
+    public FilmSearchIndex(FilmStorage filmStorage) {
+        this.filmStorage = filmStorage;
+        for (Field field : Field.values()) {
+            filmsByToken.put(field, new ConcurrentSkipListMap<>());
+        }
+    }
+
+    @EventListener(ContextRefreshedEvent.class)
+    public void preload() {
+        ensureBuilt();
+    }
+
+    /**
+     * Разбивает текст на слова из букв и цифр (кириллица и латиница), в нижнем регистре и с "ё" -> "е".
+     */
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        String normalized = text.toLowerCase(Locale.ROOT).replace('ё', 'е');
+        int start = -1;
+        for (int i = 0; i <= normalized.length(); i++) {
+            boolean letter = i < normalized.length() && Character.isLetterOrDigit(normalized.charAt(i));
+            if (letter && start < 0) {
+                start = i;
+            } else if (!letter && start >= 0) {
+                tokens.add(normalized.substring(start, i));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    // Вызывается после изменения фильма, под блокировкой фильма в FilmService
+    public void index(Film film) {
+        update(() -> put(film, true));
+    }
+
+    // Вызывается после добавления фильма. Если его уже проиндексировало построение или параллельное
+    // изменение, их текст не старше добавленного, и он не заменяется
+    public void indexNew(Film film) {
+        update(() -> put(film, false));
+    }
+
+    // Вызывается после того, как хранилище записало лайк или его снятие
+    public void likeChanged(int filmId, int delta) {
+        update(() -> likeCounts.merge(filmId, delta, (count, change) -> Math.max(count + change, 0)));
+    }
+
+    // Пакет отложенной записи лайков: учитываются только реально записанные строки
+    @EventListener
+    public void onLikesSaved(LikesSavedEvent event) {
+        for (FilmLike like : event.added()) {
+            likeChanged(like.filmId(), 1);
+        }
+        for (FilmLike like : event.removed()) {
+            likeChanged(like.filmId(), -1);
+        }
+    }
+
+    /**
+     * Возвращает не больше limit лучших результатов {@link #score} в порядке выдачи. Лучшие выбираются
+     * кучей размера limit, поэтому сортируются не все совпадения, а только попавшие в выдачу.
+     */
+    public List<Hit> search(String query, Set<Field> fields, int limit) {
+        // В вершине кучи - худший из отобранных, его и вытесняет более подходящий фильм
+        PriorityQueue<Hit> top = new PriorityQueue<>(limit, RANKING.reversed());
+        score(query, fields).forEach((filmId, score) -> {
+            Hit hit = new Hit(filmId, score, likeCounts.getOrDefault(filmId, 0));
+            if (top.size() < limit) {
+                top.add(hit);
+            } else if (RANKING.compare(hit, top.peek()) < 0) {
+                top.poll();
+                top.add(hit);
+            }
+        });
+        List<Hit> hits = new ArrayList<>(top);
+        hits.sort(RANKING);
+        return hits;
+    }
+
+    /**
+     * Ищет фильмы, у которых в выбранных полях есть слова, начинающиеся со слов запроса.
+     * Возвращает id фильма -> релевантность: за каждое слово запроса берётся лучшее совпадение,
+     * точное слово весит больше префикса, а название - больше описания.
+     */
+    public Map<Integer, Integer> score(String query, Set<Field> fields) {
+        ensureBuilt();
+        Map<Integer, Integer> scores = new HashMap<>();
+        for (String queryToken : new LinkedHashSet<>(tokenize(query))) {
+            Map<Integer, Integer> best = new HashMap<>();
+            for (Field field : fields) {
+                ConcurrentNavigableMap<String, SnapshotIntSet> index = filmsByToken.get(field);
+                int fieldWeight = field == Field.TITLE ? 2 : 0;
+                index.subMap(queryToken, true, queryToken + Character.MAX_VALUE, true).forEach((token, filmIds) -> {
+                    int weight = fieldWeight + (token.equals(queryToken) ? 2 : 1);
+                    filmIds.snapshot().forEachInt(filmId -> best.merge(filmId, weight, Math::max));
+                });
+            }
+            best.forEach((filmId, weight) -> scores.merge(filmId, weight, Integer::sum));
+        }
+        return scores;
+    }
+
+    // Пока индекс не построен, изменение пропускается: построение позже прочитает его из хранилища
+    private void update(Runnable change) {
+        lock.readLock().lock();
+        try {
+            if (built) {
+                change.run();
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void ensureBuilt() {
+        if (built) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (!built) {
+                build();
+                built = true;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void build() {
+        int afterId = 0;
+        Collection<Film> chunk;
+        do {
+            chunk = filmStorage.getFilmsAfter(afterId, BUILD_CHUNK_SIZE);
+            for (Film film : chunk) {
+                put(film, true);
+                afterId = film.getId();
+            }
+        } while (chunk.size() == BUILD_CHUNK_SIZE);
+        log.info("Построен поисковый индекс: {} фильмов, {} слов в названиях", tokensByFilm.size(),
+                filmsByToken.get(Field.TITLE).size());
+    }
+
+    // Изменения одного фильма идут под блокировкой его записи в tokensByFilm, поэтому не перемешиваются.
+    // Число лайков берётся из хранилища только при первом появлении фильма, дальше его ведёт likeChanged
+    private void put(Film film, boolean replace) {
+        int filmId = film.getId();
+        likeCounts.putIfAbsent(filmId, film.getLikeCount());
+        Map<Field, Set<String>> tokens = new EnumMap<>(Field.class);
+        tokens.put(Field.TITLE, new LinkedHashSet<>(tokenize(film.getName())));
+        tokens.put(Field.DESCRIPTION, new LinkedHashSet<>(tokenize(film.getDescription())));
+
+        tokensByFilm.compute(filmId, (id, previous) -> {
+            if (previous != null && !replace) {
+                return previous;
+            }
+            for (Field field : Field.values()) {
+                ConcurrentNavigableMap<String, SnapshotIntSet> index = filmsByToken.get(field);
+                Set<String> added = tokens.get(field);
+                Set<String> removed = previous != null ? previous.get(field) : Set.of();
+                for (String token : removed) {
+                    if (!added.contains(token)) {
+                        index.computeIfPresent(token, (key, ids) -> without(ids, filmId));
+                    }
+                }
+                for (String token : added) {
+                    if (!removed.contains(token)) {
+                        index.compute(token, (key, ids) -> with(ids, filmId));
+                    }
+                }
+            }
+            return tokens;
+        });
+    }
+
+    // Множество слова меняется внутри compute его ключа: пустое удаляется, и параллельное
+    // добавление не может попасть в уже удалённое
+    private static SnapshotIntSet with(SnapshotIntSet source, int value) {
+        SnapshotIntSet target = source != null ? source : new SnapshotIntSet(null);
+        target.add(value);
+        return target;
+    }
+
+    private static SnapshotIntSet without(SnapshotIntSet source, int value) {
+        source.remove(value);
+        return source.size() == 0 ? null : source;
+    }
+}
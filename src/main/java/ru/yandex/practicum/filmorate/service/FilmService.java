@@ -7,16 +7,25 @@ import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
 import ru.yandex.practicum.filmorate.mapper.FilmMapper;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmField;
 import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.model.Mpa;
 import ru.yandex.practicum.filmorate.storage.FilmStorage;
 import ru.yandex.practicum.filmorate.storage.GenreStorage;
 import ru.yandex.practicum.filmorate.storage.MpaStorage;
+import ru.yandex.practicum.filmorate.storage.StripedLocks;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
+import java.util.function.Consumer;
 
 @Service
 @RequiredArgsConstructor
@@ -25,8 +34,17 @@ public class FilmService {
     private final MpaStorage mpaStorage;
     private final GenreStorage genreStorage;
     private final FilmMapper filmMapper;
+    private final LikesIndex likesIndex;
+    private final FilmSearchIndex searchIndex;
+    private final StripedLocks likeLocks = new StripedLocks(LIKE_LOCK_STRIPES);
+    private final StripedLocks filmLocks = new StripedLocks(FILM_LOCK_STRIPES);
 
     private static final LocalDate CINEMA_BIRTHDAY = LocalDate.of(1895, 12, 28);
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int STREAM_CHUNK_SIZE = 500;
+    private static final int LIKE_LOCK_STRIPES = 64;
+    private static final int FILM_LOCK_STRIPES = 64;
 
     public Collection<FilmDto> getAllFilms() {
         Collection<Film> films = filmStorage.getAllFilms();
@@ -37,12 +55,85 @@ public class FilmService {
         return filmDtos;
     }
 
+    public Collection<FilmDto> getFilmsPage(Integer after, Integer limit) {
+        Collection<FilmDto> filmDtos = new java.util.ArrayList<>();
+        for (Film film : filmStorage.getFilmsAfter(after != null ? after : 0, pageSize(limit))) {
+            filmDtos.add(filmMapper.toDto(film));
+        }
+        return filmDtos;
+    }
+
+    /**
+     * Лёгкий список фильмов только с полями из fields (например "id,name,mpa"): хранилище читает
+     * лишь нужные колонки, а жанры - только если они запрошены. Без after и limit - весь каталог.
+     */
+    public List<Map<String, Object>> getFilmsProjection(Integer after, Integer limit, String fields) {
+        Set<FilmField> filmFields = FilmField.parse(fields);
+        List<Map<String, Object>> projections = new ArrayList<>();
+        if (after != null || limit != null) {
+            for (Film film : filmStorage.getFilmsAfter(after != null ? after : 0, pageSize(limit), filmFields)) {
+                projections.add(filmMapper.toProjection(film, filmFields));
+            }
+            return projections;
+        }
+
+        int afterId = 0;
+        Collection<Film> chunk;
+        do {
+            chunk = filmStorage.getFilmsAfter(afterId, STREAM_CHUNK_SIZE, filmFields);
+            for (Film film : chunk) {
+                projections.add(filmMapper.toProjection(film, filmFields));
+                afterId = film.getId();
+            }
+        } while (chunk.size() == STREAM_CHUNK_SIZE);
+        return projections;
+    }
+
+    private static int likeKey(int filmId, int userId) {
+        return 31 * filmId + userId;
+    }
+
+    private static int pageSize(Integer limit) {
+        int pageSize = limit != null ? limit : DEFAULT_PAGE_SIZE;
+        if (pageSize <= 0 || pageSize > MAX_PAGE_SIZE) {
+            throw new ValidationException("Размер страницы должен быть от 1 до " + MAX_PAGE_SIZE);
+        }
+        return pageSize;
+    }
+
+    // Обходит весь каталог страницами фиксированного размера, не держа его целиком в памяти
+    public void forEachFilm(Consumer<FilmDto> action) {
+        int afterId = 0;
+        Collection<Film> chunk;
+        do {
+            chunk = filmStorage.getFilmsAfter(afterId, STREAM_CHUNK_SIZE);
+            for (Film film : chunk) {
+                action.accept(filmMapper.toDto(film));
+                afterId = film.getId();
+            }
+        } while (chunk.size() == STREAM_CHUNK_SIZE);
+    }
+
     public FilmDto addFilm(FilmDto filmDto) {
+        Film film = toValidatedFilm(filmDto);
+        Film savedFilm = filmStorage.addFilm(film);
+        searchIndex.indexNew(savedFilm);
+        return filmMapper.toDto(savedFilm);
+    }
+
+    // Сохранение уже проверенных фильмов пачкой, для массовой загрузки
+    public List<Film> addFilms(List<Film> films) {
+        List<Film> savedFilms = filmStorage.addFilms(films);
+        savedFilms.forEach(searchIndex::indexNew);
+        return savedFilms;
+    }
+
+    // Проверка фильма без сохранения: используется и одиночным добавлением, и массовой загрузкой
+    public Film toValidatedFilm(FilmDto filmDto) {
         Film film = filmMapper.toEntity(filmDto);
         validateFilm(film);
         validateMpaAndGenres(film);
-        Film savedFilm = filmStorage.addFilm(film);
-        return filmMapper.toDto(savedFilm);
+        return film;
     }
 
     public FilmDto updateFilm(FilmDto filmDto) {
@@ -50,12 +141,17 @@ public class FilmService {
             throw new ValidationException("ID фильма не может быть null");
         }
 
-        filmStorage.getById(filmDto.getId());
-
+        // Существование фильма проверяет само хранилище при обновлении
         Film film = filmMapper.toEntity(filmDto);
         validateFilm(film);
         validateMpaAndGenres(film);
-        Film updatedFilm = filmStorage.updateFilm(film);
+        // Запись и индексация идут под блокировкой фильма, чтобы параллельные изменения попадали
+        // в поисковый индекс в том же порядке, что и в хранилище
+        Film updatedFilm = filmLocks.withLock(film.getId(), () -> {
+            Film saved = filmStorage.updateFilm(film);
+            searchIndex.index(saved);
+            return saved;
+        });
         return filmMapper.toDto(updatedFilm);
     }
 
@@ -64,34 +160,89 @@ public class FilmService {
         return filmMapper.toDto(film);
     }
 
-    public void addLike(int filmId, int userId) {
-        filmStorage.addLike(filmId, userId);
+    public long getVersion(int id) {
+        return filmStorage.getVersion(id);
     }
 
-    public void removeLike(int filmId, int userId) {
-        filmStorage.removeLike(filmId, userId);
+    // Запись лайка и обновление индекса идут под одной блокировкой пары, чтобы встречные лайк
+    // и снятие лайка применялись к индексу в том же порядке, что и к хранилищу
+    public void addLike(int filmId, int userId) {
+        likeLocks.withLock(likeKey(filmId, userId), () -> {
+            if (filmStorage.addLike(filmId, userId)) {
+                likesIndex.addLike(filmId, userId);
+                searchIndex.likeChanged(filmId, 1);
+            }
+        });
     }
 
-    public Collection<FilmDto> getPopularFilms(int count) {
-        Collection<Film> films = filmStorage.getAllFilms();
-
-        java.util.List<Film> filmList = new java.util.ArrayList<>(films);
-        filmList.sort((f1, f2) -> {
-            int likes1 = f1.getLikes() != null ? f1.getLikes().size() : 0;
-            int likes2 = f2.getLikes() != null ? f2.getLikes().size() : 0;
-            return Integer.compare(likes2, likes1);
+    public void removeLike(int filmId, int userId) {
+        likeLocks.withLock(likeKey(filmId, userId), () -> {
+            if (filmStorage.removeLike(filmId, userId)) {
+                likesIndex.removeLike(filmId, userId);
+                searchIndex.likeChanged(filmId, -1);
+            }
         });
+    }
 
+    // count ограничен как размер страницы: он уходит в LIMIT запроса и в запас кандидатов буфера лайков
+    public Collection<FilmDto> getPopularFilms(int count, Integer genreId, Integer year) {
+        int pageSize = pageSize(count);
+        checkGenreExists(genreId);
+        Collection<Film> films = filmStorage.getPopularFilms(pageSize, genreId, year);
         Collection<FilmDto> popularFilms = new java.util.ArrayList<>();
-        int taken = 0;
-        for (Film film : filmList) {
-            if (taken >= count) break;
+        for (Film film : films) {
             popularFilms.add(filmMapper.toDto(film));
-            taken++;
         }
         return popularFilms;
     }
 
+    public List<Map<String, Object>> getPopularFilmsProjection(int count, Integer genreId, Integer year, String fields) {
+        Set<FilmField> filmFields = FilmField.parse(fields);
+        int pageSize = pageSize(count);
+        checkGenreExists(genreId);
+        List<Map<String, Object>> projections = new ArrayList<>();
+        for (Film film : filmStorage.getPopularFilms(pageSize, genreId, year, filmFields)) {
+            projections.add(filmMapper.toProjection(film, filmFields));
+        }
+        return projections;
+    }
+
+    private void checkGenreExists(Integer genreId) {
+        if (genreId != null && genreStorage.getGenreById(genreId) == null) {
+            throw new NotFoundException("Жанр с ID " + genreId + " не найден");
+        }
+    }
+
+    // Порядок и отбор лучших - по поисковому индексу, из хранилища загружаются только попавшие в выдачу
+    public List<FilmDto> searchFilms(String query, List<String> by, Integer limit) {
+        int pageSize = pageSize(limit);
+        if (query == null || query.isBlank()) {
+            throw new ValidationException("Поисковый запрос не может быть пустым");
+        }
+        Set<FilmSearchIndex.Field> fields = EnumSet.noneOf(FilmSearchIndex.Field.class);
+        for (String field : by) {
+            switch (field.trim().toLowerCase(Locale.ROOT)) {
+                case "title" -> fields.add(FilmSearchIndex.Field.TITLE);
+                case "description" -> fields.add(FilmSearchIndex.Field.DESCRIPTION);
+                default -> throw new ValidationException("Искать можно только по title и description, а не по " + field);
+            }
+        }
+
+        List<FilmSearchIndex.Hit> hits = searchIndex.search(query, fields, pageSize);
+        Map<Integer, Film> films = new HashMap<>();
+        for (Film film : filmStorage.getFilmsByIds(hits.stream().map(FilmSearchIndex.Hit::filmId).toList())) {
+            films.put(film.getId(), film);
+        }
+        List<FilmDto> result = new ArrayList<>(hits.size());
+        for (FilmSearchIndex.Hit hit : hits) {
+            Film film = films.get(hit.filmId());
+            if (film != null) {
+                result.add(filmMapper.toDto(film));
+            }
+        }
+        return result;
+    }
+
     private void validateFilm(Film film) {
         if (film.getName() == null || film.getName().isBlank()) {
             throw new ValidationException("Название фильма не может быть пустым");
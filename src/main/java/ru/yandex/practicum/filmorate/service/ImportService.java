@@ -0,0 +1,238 @@
+package ru.yandex.practicum.filmorate.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.dto.FilmDto;
+import ru.yandex.practicum.filmorate.dto.ImportResult;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.UserStorage;
+import ru.yandex.practicum.filmorate.validation.UserValidator;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Массовая загрузка фильмов и пользователей из NDJSON или CSV. Тело запроса читается построчно,
+ * проверенные строки сохраняются пачками по {@value #CHUNK_SIZE} штук, а ошибки отдельных строк
+ * попадают в отчёт и не прерывают загрузку.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ImportService {
+    public static final String CSV_MEDIA_TYPE = "text/csv";
+    private static final int CHUNK_SIZE = 500;
+
+    private final FilmService filmService;
+    private final UserStorage userStorage;
+    private final UserValidator userValidator;
+    private final ObjectMapper objectMapper;
+    private final PlatformTransactionManager transactionManager;
+
+    public ImportResult importFilms(InputStream body, String contentType) throws IOException {
+        ImportResult result = importRows(body, isCsv(contentType), FilmDto.class, this::filmFromCsv,
+                filmService::toValidatedFilm, filmService::addFilms);
+        log.info("Загрузка фильмов: сохранено {}, отклонено {}", result.getImported(), result.getFailed());
+        return result;
+    }
+
+    public ImportResult importUsers(InputStream body, String contentType) throws IOException {
+        ImportResult result = importRows(body, isCsv(contentType), User.class, this::userFromCsv,
+                user -> {
+                    userValidator.validateUser(user);
+                    return user;
+                },
+                userStorage::addUsers);
+        log.info("Загрузка пользователей: сохранено {}, отклонено {}", result.getImported(), result.getFailed());
+        return result;
+    }
+
+    private <D, E> ImportResult importRows(InputStream body,
+                                           boolean csv,
+                                           Class<D> dtoType,
+                                           Function<Map<String, String>, D> fromCsv,
+                                           Function<D, E> validator,
+                                           Function<List<E>, List<E>> saver) throws IOException {
+        ImportResult result = new ImportResult();
+        List<E> chunk = new ArrayList<>(CHUNK_SIZE);
+        List<Long> chunkLines = new ArrayList<>(CHUNK_SIZE);
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+            String[] header = null;
+            long lineNumber = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                if (csv && header == null) {
+                    header = parseCsvLine(line);
+                    continue;
+                }
+
+                try {
+                    D dto = csv ? fromCsv.apply(toRecord(header, parseCsvLine(line)))
+                            : objectMapper.readValue(line, dtoType);
+                    chunk.add(validator.apply(dto));
+                    chunkLines.add(lineNumber);
+                } catch (ValidationException | NotFoundException e) {
+                    result.addError(lineNumber, e.getMessage());
+                } catch (JsonProcessingException e) {
+                    result.addError(lineNumber, "Некорректный JSON: " + e.getOriginalMessage());
+                } catch (IllegalArgumentException | DateTimeException e) {
+                    result.addError(lineNumber, "Некорректное значение: " + e.getMessage());
+                }
+
+                if (chunk.size() == CHUNK_SIZE) {
+                    flush(chunk, chunkLines, saver, result);
+                }
+            }
+        }
+
+        flush(chunk, chunkLines, saver, result);
+        return result;
+    }
+
+    private <E> void flush(List<E> chunk, List<Long> chunkLines, Function<List<E>, List<E>> saver,
+                           ImportResult result) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+
+        // Каждая пачка и каждая повторная строка пишутся во вложенной транзакции, чтобы сбой откатывал
+        // только их, даже если загрузка вызвана внутри внешней транзакции
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_NESTED);
+
+        try {
+            transaction.executeWithoutResult(status -> saver.apply(new ArrayList<>(chunk)));
+            result.addImported(chunk.size());
+        } catch (DataAccessException | ValidationException e) {
+            // Пачка откатилась целиком: сохраняем её по одной строке, чтобы отклонить только ошибочные
+            log.warn("Пачка из {} строк не сохранена, повтор по одной строке: {}", chunk.size(), e.getMessage());
+            for (int i = 0; i < chunk.size(); i++) {
+                try {
+                    E row = chunk.get(i);
+                    transaction.executeWithoutResult(status -> saver.apply(new ArrayList<>(List.of(row))));
+                    result.addImported(1);
+                } catch (DuplicateKeyException rowError) {
+                    result.addError(chunkLines.get(i), "Запись с такими уникальными полями уже существует");
+                } catch (DataAccessException rowError) {
+                    result.addError(chunkLines.get(i), "Ошибка записи в БД");
+                } catch (ValidationException rowError) {
+                    result.addError(chunkLines.get(i), rowError.getMessage());
+                }
+            }
+        }
+
+        chunk.clear();
+        chunkLines.clear();
+    }
+
+    private FilmDto filmFromCsv(Map<String, String> record) {
+        FilmDto film = new FilmDto();
+        film.setName(record.get("name"));
+        film.setDescription(record.get("description"));
+        film.setReleaseDate(parseDate(record.get("releasedate")));
+        film.setDuration(parseInteger(record.get("duration")));
+
+        Integer mpaId = parseInteger(record.get("mpa"));
+        if (mpaId != null) {
+            FilmDto.MpaDto mpa = new FilmDto.MpaDto();
+            mpa.setId(mpaId);
+            film.setMpa(mpa);
+        }
+
+        // Жанры перечисляются через "|", чтобы не конфликтовать с разделителем CSV
+        String genres = record.get("genres");
+        if (genres != null && !genres.isBlank()) {
+            Set<FilmDto.GenreDto> genreDtos = new LinkedHashSet<>();
+            for (String genreId : genres.split("\\|")) {
+                FilmDto.GenreDto genre = new FilmDto.GenreDto();
+                genre.setId(Integer.parseInt(genreId.trim()));
+                genreDtos.add(genre);
+            }
+            film.setGenres(genreDtos);
+        }
+        return film;
+    }
+
+    private User userFromCsv(Map<String, String> record) {
+        User user = new User();
+        user.setEmail(record.get("email"));
+        user.setLogin(record.get("login"));
+        user.setName(record.get("name"));
+        user.setBirthday(parseDate(record.get("birthday")));
+        return user;
+    }
+
+    private boolean isCsv(String contentType) {
+        return contentType != null
+                && MediaType.parseMediaType(contentType).isCompatibleWith(MediaType.parseMediaType(CSV_MEDIA_TYPE));
+    }
+
+    private Map<String, String> toRecord(String[] header, String[] values) {
+        Map<String, String> record = new HashMap<>();
+        for (int i = 0; i < header.length && i < values.length; i++) {
+            record.put(header[i].trim().toLowerCase(Locale.ROOT), values[i].trim());
+        }
+        return record;
+    }
+
+    // Разбор одной строки CSV: поля через запятую, кавычки экранируются удвоением
+    private String[] parseCsvLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields.toArray(new String[0]);
+    }
+
+    private Integer parseInteger(String value) {
+        return value == null || value.isBlank() ? null : Integer.valueOf(value.trim());
+    }
+
+    private LocalDate parseDate(String value) {
+        return value == null || value.isBlank() ? null : LocalDate.parse(value.trim());
+    }
+}
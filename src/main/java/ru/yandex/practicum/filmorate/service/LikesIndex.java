@@ -0,0 +1,141 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.IntSet;
+import ru.yandex.practicum.filmorate.model.SnapshotIntSet;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.LikesSavedEvent;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Разреженная матрица лайков пользователь x фильм в памяти: для каждого пользователя - множество
+ * понравившихся фильмов, для каждого фильма - множество лайкнувших. Строится из хранилища при первом
+ * обращении и дальше обновляется каждым лайком. Множества меняются на месте, без копирования
+ * на каждый лайк, а читатели получают их неизменяемые снимки.
+ * Меняется только реально записанными лайками: {@link FilmService} вызывает addLike и removeLike,
+ * когда хранилище сообщило об изменении, а пакеты отложенной записи приходят {@link LikesSavedEvent}.
+ */
+@Slf4j
+@Component
+public class LikesIndex {
+    private static final int BUILD_CHUNK_SIZE = 500;
+
+    private final FilmStorage filmStorage;
+    private final ConcurrentMap<Integer, SnapshotIntSet> filmsByUser = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Integer, SnapshotIntSet> usersByFilm = new ConcurrentHashMap<>();
+    // Обновления идут под общей блокировкой, построение - под исключительной
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile boolean built;
+
+    public LikesIndex(FilmStorage filmStorage) {
+        this.filmStorage = filmStorage;
+    }
+
+    // Вызывается после записи лайка в хранилище. Пока индекс не построен, лайк пропускается:
+    // построение позже прочитает его из хранилища
+    public void addLike(int filmId, int userId) {
+        update(() -> {
+            filmsByUser.compute(userId, (id, films) -> with(films, filmId));
+            usersByFilm.compute(filmId, (id, users) -> with(users, userId));
+        });
+    }
+
+    public void removeLike(int filmId, int userId) {
+        update(() -> {
+            filmsByUser.computeIfPresent(userId, (id, films) -> without(films, filmId));
+            usersByFilm.computeIfPresent(filmId, (id, users) -> without(users, userId));
+        });
+    }
+
+    // Пакет отложенной записи. Отброшенные лайки могли попасть в индекс при построении через буфер
+    @EventListener
+    public void onLikesSaved(LikesSavedEvent event) {
+        event.added().forEach(like -> addLike(like.filmId(), like.userId()));
+        event.removed().forEach(like -> removeLike(like.filmId(), like.userId()));
+        event.rejected().forEach(like -> removeLike(like.filmId(), like.userId()));
+    }
+
+    public IntSet getLikedFilms(int userId) {
+        ensureBuilt();
+        return snapshot(filmsByUser.get(userId));
+    }
+
+    public IntSet getLikers(int filmId) {
+        ensureBuilt();
+        return snapshot(usersByFilm.get(filmId));
+    }
+
+    // Проверка под блокировкой: лайк, записанный во время построения, дождётся его конца и не потеряется
+    private void update(Runnable change) {
+        lock.readLock().lock();
+        try {
+            if (built) {
+                change.run();
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void ensureBuilt() {
+        if (built) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (!built) {
+                build();
+                built = true;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void build() {
+        int afterId = 0;
+        int likes = 0;
+        Collection<Film> chunk;
+        do {
+            chunk = filmStorage.getFilmsAfter(afterId, BUILD_CHUNK_SIZE);
+            for (Film film : chunk) {
+                afterId = film.getId();
+                if (film.getLikes().isEmpty()) {
+                    continue;
+                }
+                int filmId = film.getId();
+                usersByFilm.put(filmId, new SnapshotIntSet(film.getLikes()));
+                for (int userId : film.getLikes()) {
+                    filmsByUser.computeIfAbsent(userId, id -> new SnapshotIntSet(null)).add(filmId);
+                }
+                likes += film.getLikes().size();
+            }
+        } while (chunk.size() == BUILD_CHUNK_SIZE);
+        log.info("Построен индекс лайков: {} лайков, {} пользователей", likes, filmsByUser.size());
+    }
+
+    // Изменения одного множества идут внутри compute его ключа: пустое множество удаляется,
+    // и параллельный лайк не может попасть в уже удалённое
+    private static SnapshotIntSet with(SnapshotIntSet source, int value) {
+        SnapshotIntSet target = source != null ? source : new SnapshotIntSet(null);
+        target.add(value);
+        return target;
+    }
+
+    private static SnapshotIntSet without(SnapshotIntSet source, int value) {
+        source.remove(value);
+        return source.size() == 0 ? null : source;
+    }
+
+    private static IntSet snapshot(SnapshotIntSet values) {
+        return values != null ? values.snapshot() : IntSet.of();
+    }
+}
@@ -27,6 +27,10 @@ public class MpaService {
                 .collect(Collectors.toList());
     }
 
+    public long getVersion() {
+        return mpaStorage.getVersion();
+    }
+
     public ru.yandex.practicum.filmorate.model.Mpa getMpaById(int id) {
         return mpaStorage.getMpaById(id);
     }
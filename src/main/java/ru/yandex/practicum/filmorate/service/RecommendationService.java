@@ -0,0 +1,97 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.dto.FilmDto;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.mapper.FilmMapper;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.IntSet;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.UserStorage;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Рекомендации по лайкам: находит пользователей с наибольшим числом общих с целевым лайков
+ * и предлагает понравившиеся им фильмы, которые целевой пользователь ещё не лайкнул.
+ * Фильмы, которые лайкнуло больше таких соседей, идут первыми. Все подсчёты - по {@link LikesIndex},
+ * а из хранилища загружаются только фильмы, попавшие в выдачу.
+ */
+@Service
+@RequiredArgsConstructor
+public class RecommendationService {
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
+
+    // Сначала фильмы, которые лайкнуло больше соседей, затем по id
+    private static final Comparator<Map.Entry<Integer, Integer>> RANKING =
+            Map.Entry.<Integer, Integer>comparingByValue().reversed()
+                    .thenComparing(Map.Entry.comparingByKey());
+
+    private final LikesIndex likesIndex;
+    private final UserStorage userStorage;
+    private final FilmStorage filmStorage;
+    private final FilmMapper filmMapper;
+
+    public List<FilmDto> getRecommendations(int userId, Integer limit) {
+        int pageSize = limit != null ? limit : DEFAULT_PAGE_SIZE;
+        if (pageSize <= 0 || pageSize > MAX_PAGE_SIZE) {
+            throw new ValidationException("Размер страницы должен быть от 1 до " + MAX_PAGE_SIZE);
+        }
+        userStorage.getById(userId);
+
+        IntSet liked = likesIndex.getLikedFilms(userId);
+        Map<Integer, Integer> overlaps = new HashMap<>();
+        liked.forEachInt(filmId -> likesIndex.getLikers(filmId).forEachInt(otherId -> {
+            if (otherId != userId) {
+                overlaps.merge(otherId, 1, Integer::sum);
+            }
+        }));
+        if (overlaps.isEmpty()) {
+            return List.of();
+        }
+
+        int maxOverlap = overlaps.values().stream().mapToInt(Integer::intValue).max().getAsInt();
+        Map<Integer, Integer> scores = new HashMap<>();
+        overlaps.forEach((otherId, overlap) -> {
+            if (overlap == maxOverlap) {
+                likesIndex.getLikedFilms(otherId).forEachInt(filmId -> {
+                    if (!liked.contains(filmId)) {
+                        scores.merge(filmId, 1, Integer::sum);
+                    }
+                });
+            }
+        });
+
+        // Лучшие выбираются кучей размера pageSize: в вершине худший из отобранных
+        PriorityQueue<Map.Entry<Integer, Integer>> top = new PriorityQueue<>(pageSize, RANKING.reversed());
+        for (Map.Entry<Integer, Integer> score : scores.entrySet()) {
+            if (top.size() < pageSize) {
+                top.add(score);
+            } else if (RANKING.compare(score, top.peek()) < 0) {
+                top.poll();
+                top.add(score);
+            }
+        }
+        List<Integer> ranked = top.stream().sorted(RANKING).map(Map.Entry::getKey).toList();
+
+        Map<Integer, Film> films = new HashMap<>();
+        for (Film film : filmStorage.getFilmsByIds(ranked)) {
+            films.put(film.getId(), film);
+        }
+        List<FilmDto> recommendations = new ArrayList<>(ranked.size());
+        for (Integer filmId : ranked) {
+            Film film = films.get(filmId);
+            if (film != null) {
+                recommendations.add(filmMapper.toDto(film));
+            }
+        }
+        return recommendations;
+    }
+}
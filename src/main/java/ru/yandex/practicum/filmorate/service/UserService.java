@@ -2,28 +2,51 @@ package ru.yandex.practicum.filmorate.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.storage.UserStorage;
 
 import java.util.Collection;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.function.Consumer;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class UserService {
 
-    @Qualifier("userDbStorage")
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int STREAM_CHUNK_SIZE = 500;
+
     private final UserStorage userStorage;
 
     public Collection<User> getAllUsers() {
         return userStorage.getAllUsers();
     }
 
+    public Collection<User> getUsersPage(Integer after, Integer limit) {
+        int afterId = after != null ? after : 0;
+        int pageSize = limit != null ? limit : DEFAULT_PAGE_SIZE;
+        if (pageSize <= 0 || pageSize > MAX_PAGE_SIZE) {
+            throw new ValidationException("Размер страницы должен быть от 1 до " + MAX_PAGE_SIZE);
+        }
+        return userStorage.getUsersAfter(afterId, pageSize);
+    }
+
+    // Обходит всех пользователей страницами фиксированного размера, не держа их целиком в памяти
+    public void forEachUser(Consumer<User> action) {
+        int afterId = 0;
+        Collection<User> chunk;
+        do {
+            chunk = userStorage.getUsersAfter(afterId, STREAM_CHUNK_SIZE);
+            for (User user : chunk) {
+                action.accept(user);
+                afterId = user.getId();
+            }
+        } while (chunk.size() == STREAM_CHUNK_SIZE);
+    }
+
     public User addUser(User user) {
         return userStorage.addUser(user);
     }
@@ -36,49 +59,51 @@ public class UserService {
         return userStorage.getById(id);
     }
 
+    public long getVersion(int id) {
+        return userStorage.getVersion(id);
+    }
+
     public void addFriend(int idUser, int idFriend) {
         if (idUser == idFriend) {
             throw new ValidationException("Нельзя добавить самого себя в друзья");
         }
         userStorage.addFriend(idUser, idFriend);
-        log.info("Пользователь {} добавил в друзья пользователя {}", idUser, idFriend);
+        log.debug("Пользователь {} добавил в друзья пользователя {}", idUser, idFriend);
+    }
+
+    public void confirmFriend(int idUser, int idFriend) {
+        userStorage.confirmFriend(idUser, idFriend);
+        log.debug("Пользователь {} подтвердил дружбу с пользователем {}", idUser, idFriend);
+    }
+
+    public void declineFriend(int idUser, int idFriend) {
+        userStorage.declineFriend(idUser, idFriend);
+        log.debug("Пользователь {} отклонил заявку в друзья от пользователя {}", idUser, idFriend);
     }
 
     public void removeFriend(int idUser, int idFriend) {
         userStorage.removeFriend(idUser, idFriend);
-        log.info("Пользователь {} удалил из друзей пользователя {}", idUser, idFriend);
+        log.debug("Пользователь {} удалил из друзей пользователя {}", idUser, idFriend);
     }
 
     public Collection<User> getAllFriends(int idUser) {
-        log.info("Получение друзей пользователя {}", idUser);
-        Set<Integer> friendIds = userStorage.getFriends(idUser);
-        log.info("Найдено {} друзей у пользователя {}", friendIds.size(), idUser);
-
-        Set<User> friends = new HashSet<>();
-        for (Integer friendId : friendIds) {
-            friends.add(userStorage.getById(friendId));
-        }
-
+        log.debug("Получение друзей пользователя {}", idUser);
+        Collection<User> friends = userStorage.getFriendUsers(idUser);
+        log.debug("Найдено {} друзей у пользователя {}", friends.size(), idUser);
         return friends;
     }
 
+    public Collection<User> getFriendRequests(int idUser) {
+        return userStorage.getFriendRequests(idUser);
+    }
+
     public Collection<User> getCommonFriends(int idUser, int otherId) {
         if (idUser == otherId) {
             throw new ValidationException("Нельзя искать общих друзей с самим собой");
         }
 
-        Set<Integer> userFriends = userStorage.getFriends(idUser);
-        Set<Integer> otherFriends = userStorage.getFriends(otherId);
-
-        Set<Integer> commonFriendIds = new HashSet<>(userFriends);
-        commonFriendIds.retainAll(otherFriends);
-
-        Set<User> commonFriends = new HashSet<>();
-        for (Integer friendId : commonFriendIds) {
-            commonFriends.add(userStorage.getById(friendId));
-        }
-
-        log.info("Найдено {} общих друзей у пользователей {} и {}",
+        Collection<User> commonFriends = userStorage.getCommonFriends(idUser, otherId);
+        log.debug("Найдено {} общих друзей у пользователей {} и {}",
                 commonFriends.size(), idUser, otherId);
 
         return commonFriends;
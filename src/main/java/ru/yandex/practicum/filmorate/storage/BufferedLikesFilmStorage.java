@@ -0,0 +1,292 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmField;
+import ru.yandex.practicum.filmorate.model.FilmLike;
+import ru.yandex.practicum.filmorate.model.IntSet;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Отложенная запись лайков перед {@link FilmDbStorage}. Лайки и снятия лайков копятся в памяти:
+ * для каждой пары (фильм, пользователь) хранится только последнее действие. Раз в flush-interval-ms
+ * или при накоплении max-pending пар они пишутся в БД пакетами, а при остановке приложения
+ * записывается всё, что осталось. Чтение накладывает ещё не записанные действия на данные из БД.
+ * Фильм и пользователь лайка проверяются до буфера, как и в {@link FilmDbStorage}; при записи пакета
+ * лайки удалённых за это время фильмов и пользователей отбрасываются.
+ * Подключается в {@link StorageConfig} настройкой filmorate.likes.write-behind.enabled.
+ * Лайк не считается записанным, пока не записан пакет: addLike и removeLike возвращают false,
+ * а о реально записанных лайках после каждого пакета сообщает {@link LikesSavedEvent}.
+ */
+@Slf4j
+public class BufferedLikesFilmStorage implements FilmStorage {
+    private static final Comparator<Film> BY_POPULARITY =
+            Comparator.comparingInt(Film::getLikeCount).reversed().thenComparing(Film::getId);
+
+    private final FilmDbStorage delegate;
+    private final UserStorage userStorage;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int maxPending;
+    // filmId -> (userId -> true: лайк, false: лайк снят)
+    private final ConcurrentMap<Integer, ConcurrentMap<Integer, Boolean>> pending = new ConcurrentHashMap<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    // filmId -> номер последнего незаписанного изменения лайков фильма
+    private final ConcurrentMap<Integer, Long> pendingVersions = new ConcurrentHashMap<>();
+    private final AtomicLong changeSequence = new AtomicLong();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final ScheduledExecutorService flusher;
+
+    public BufferedLikesFilmStorage(FilmDbStorage delegate, UserStorage userStorage,
+                                    long flushIntervalMillis, int maxPending) {
+        this(delegate, userStorage, event -> { }, flushIntervalMillis, maxPending);
+    }
+
+    public BufferedLikesFilmStorage(FilmDbStorage delegate, UserStorage userStorage,
+                                    ApplicationEventPublisher eventPublisher, long flushIntervalMillis, int maxPending) {
+        this.delegate = delegate;
+        this.userStorage = userStorage;
+        this.eventPublisher = eventPublisher;
+        this.maxPending = maxPending;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform()
+                .name("like-flusher")
+                .daemon(true)
+                .factory());
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMillis, flushIntervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    // Фильм проверяется запросом версии по ключу, пользователь - через кэш пользователей, если он включён
+    @Override
+    public boolean addLike(int filmId, int userId) {
+        delegate.getVersion(filmId);
+        userStorage.getVersion(userId);
+        buffer(filmId, userId, true);
+        return false;
+    }
+
+    @Override
+    public boolean removeLike(int filmId, int userId) {
+        buffer(filmId, userId, false);
+        return false;
+    }
+
+    @Override
+    public Set<Integer> getLikes(int filmId) {
+        return withPendingLikes(filmId, delegate.getLikes(filmId));
+    }
+
+    @Override
+    public Film getById(int id) {
+        return withPendingLikes(delegate.getById(id));
+    }
+
+    // Пока у фильма есть незаписанные лайки, его версия - отрицательный номер последнего изменения
+    // в буфере: он уникален и не совпадает ни с одной версией из БД. Версия из БД читается всё равно:
+    // буфер принимает лайки и несуществующих фильмов, а для них нужен 404, а не выдуманная версия
+    @Override
+    public long getVersion(int id) {
+        long storedVersion = delegate.getVersion(id);
+        Long pendingVersion = pendingVersions.get(id);
+        return pendingVersion != null ? -pendingVersion : storedVersion;
+    }
+
+    @Override
+    public List<Film> getFilmsByIds(Collection<Integer> ids) {
+        List<Film> films = delegate.getFilmsByIds(ids);
+        withPendingLikes(films);
+        return films;
+    }
+
+    @Override
+    public Collection<Film> getAllFilms() {
+        return withPendingLikes(delegate.getAllFilms());
+    }
+
+    @Override
+    public Collection<Film> getFilmsAfter(int afterId, int limit) {
+        return withPendingLikes(delegate.getFilmsAfter(afterId, limit));
+    }
+
+    // Число лайков с учётом буфера считается по полному набору лайков, поэтому проекция
+    // уходит в БД как есть, только когда буфер на результат не влияет
+    @Override
+    public Collection<Film> getFilmsAfter(int afterId, int limit, Set<FilmField> fields) {
+        if (fields.contains(FilmField.LIKE_COUNT) && !pending.isEmpty()) {
+            return getFilmsAfter(afterId, limit);
+        }
+        return delegate.getFilmsAfter(afterId, limit, fields);
+    }
+
+    // Кандидаты - топ из БД с запасом на фильмы, которые опустятся из-за снятых лайков,
+    // плюс все фильмы с незаписанными лайками, которые могут подняться в топ
+    @Override
+    public Collection<Film> getPopularFilms(int count, Integer genreId, Integer year) {
+        Set<Integer> pendingFilmIds = Set.copyOf(pending.keySet());
+        List<Film> films = new ArrayList<>(delegate.getPopularFilms(count + pendingFilmIds.size(), genreId, year));
+        Set<Integer> missing = new HashSet<>(pendingFilmIds);
+        films.forEach(film -> missing.remove(film.getId()));
+        for (Film film : delegate.getFilmsByIds(missing)) {
+            if (FilmFilters.matches(film, genreId, year)) {
+                films.add(film);
+            }
+        }
+        withPendingLikes(films);
+        films.sort(BY_POPULARITY);
+        return films.size() > count ? films.subList(0, count) : films;
+    }
+
+    @Override
+    public Collection<Film> getPopularFilms(int count, Integer genreId, Integer year, Set<FilmField> fields) {
+        if (!pending.isEmpty()) {
+            return getPopularFilms(count, genreId, year);
+        }
+        return delegate.getPopularFilms(count, genreId, year, fields);
+    }
+
+    @Override
+    public Film addFilm(Film film) {
+        return withPendingLikes(delegate.addFilm(film));
+    }
+
+    @Override
+    public List<Film> addFilms(List<Film> films) {
+        return delegate.addFilms(films);
+    }
+
+    @Override
+    public Film updateFilm(Film film) {
+        return withPendingLikes(delegate.updateFilm(film));
+    }
+
+    /**
+     * Записывает накопленные лайки в БД. Пары, изменённые во время записи, остаются до следующего раза,
+     * кроме отброшенных хранилищем: их фильма или пользователя нет, и буфер их больше не держит.
+     */
+    public synchronized void flush() {
+        flushRequested.set(false);
+        List<FilmLike> likes = new ArrayList<>();
+        List<FilmLike> unlikes = new ArrayList<>();
+        List<Map.Entry<FilmLike, Boolean>> written = new ArrayList<>();
+        pending.forEach((filmId, users) -> users.forEach((userId, liked) -> {
+            FilmLike like = new FilmLike(filmId, userId);
+            (liked ? likes : unlikes).add(like);
+            written.add(Map.entry(like, liked));
+        }));
+        if (written.isEmpty()) {
+            return;
+        }
+
+        LikesSavedEvent saved = delegate.saveLikeChanges(likes, unlikes);
+        // Отброшенная пара удаляется, даже если её изменили во время записи: запись снова её отбросит
+        Set<FilmLike> rejected = new HashSet<>(saved.rejected());
+
+        for (Map.Entry<FilmLike, Boolean> entry : written) {
+            FilmLike like = entry.getKey();
+            ConcurrentMap<Integer, Boolean> users = pending.get(like.filmId());
+            boolean removed = users != null && (rejected.contains(like)
+                    ? users.remove(like.userId()) != null
+                    : users.remove(like.userId(), entry.getValue()));
+            if (removed) {
+                pendingCount.decrementAndGet();
+            }
+            // compute по тому же ключу атомарен относительно buffer(), так что непустую карту не удалим
+            pending.computeIfPresent(like.filmId(), (filmId, map) -> {
+                if (!map.isEmpty()) {
+                    return map;
+                }
+                pendingVersions.remove(filmId);
+                return null;
+            });
+        }
+        // Пакеты записываются по одному, поэтому и события о них приходят в порядке записи
+        eventPublisher.publishEvent(saved);
+        log.debug("Записано {} лайков и {} снятий лайков", likes.size(), unlikes.size());
+    }
+
+    @PreDestroy
+    public void close() {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        log.info("Буфер лайков записан перед остановкой");
+    }
+
+    private void buffer(int filmId, int userId, boolean liked) {
+        pending.compute(filmId, (id, users) -> {
+            ConcurrentMap<Integer, Boolean> map = users != null ? users : new ConcurrentHashMap<>();
+            if (map.put(userId, liked) == null) {
+                pendingCount.incrementAndGet();
+            }
+            pendingVersions.put(filmId, changeSequence.incrementAndGet());
+            return map;
+        });
+        if (pendingCount.get() >= maxPending && flushRequested.compareAndSet(false, true)) {
+            flusher.execute(this::flushQuietly);
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            // Накопленное не теряется: пары удаляются из буфера только после успешной записи
+            log.error("Не удалось записать буфер лайков: {}", e.getMessage(), e);
+        }
+    }
+
+    private Collection<Film> withPendingLikes(Collection<Film> films) {
+        if (!pending.isEmpty()) {
+            films.forEach(this::withPendingLikes);
+        }
+        return films;
+    }
+
+    // FilmDbStorage на каждый вызов создаёт новые объекты, поэтому их можно дополнять на месте
+    private Film withPendingLikes(Film film) {
+        Long pendingVersion = pendingVersions.get(film.getId());
+        if (pendingVersion != null) {
+            Set<Integer> likes = withPendingLikes(film.getId(), film.getLikes());
+            film.setLikes(likes);
+            film.setLikeCount(likes.size());
+            film.setVersion(-pendingVersion);
+        }
+        return film;
+    }
+
+    private Set<Integer> withPendingLikes(int filmId, Set<Integer> stored) {
+        Map<Integer, Boolean> users = pending.get(filmId);
+        if (users == null) {
+            return stored;
+        }
+        IntSet likes = new IntSet(stored);
+        users.forEach((userId, liked) -> {
+            if (liked) {
+                likes.add(userId.intValue());
+            } else {
+                likes.remove(userId.intValue());
+            }
+        });
+        return likes;
+    }
+}
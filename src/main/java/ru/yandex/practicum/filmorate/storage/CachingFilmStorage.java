@@ -0,0 +1,151 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import org.springframework.context.event.EventListener;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmField;
+import ru.yandex.practicum.filmorate.model.FilmLike;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Кэш собранных фильмов (с жанрами и лайками) перед хранилищем. Через кэш идёт только чтение по id,
+ * списки и топ читаются из хранилища. Каждое изменение фильма или его лайков сбрасывает его запись.
+ * Фильмы из кэша общие для всех вызывающих, поэтому изменять их нельзя.
+ * Подключается в {@link StorageConfig} настройкой filmorate.cache.enabled.
+ */
+public class CachingFilmStorage implements FilmStorage {
+    private final FilmStorage delegate;
+    private final Cache<Integer, Film> films;
+
+    public CachingFilmStorage(FilmStorage delegate, Cache<Integer, Film> films) {
+        this.delegate = delegate;
+        this.films = films;
+    }
+
+    // Загрузка держит запись занятой, поэтому invalidate после записи в БД не пропустит устаревший фильм
+    @Override
+    public Film getById(int id) {
+        return films.get(id, delegate::getById);
+    }
+
+    // Недостающие в кэше фильмы догружаются одним запросом, но в кэш не кладутся: пакетная загрузка
+    // не держит записи занятыми и могла бы записать фильм поверх invalidate параллельного изменения
+    @Override
+    public List<Film> getFilmsByIds(Collection<Integer> ids) {
+        Map<Integer, Film> found = new HashMap<>(films.getAllPresent(ids));
+        List<Integer> missing = new ArrayList<>();
+        for (Integer id : ids) {
+            if (!found.containsKey(id)) {
+                missing.add(id);
+            }
+        }
+        if (!missing.isEmpty()) {
+            for (Film film : delegate.getFilmsByIds(missing)) {
+                found.put(film.getId(), film);
+            }
+        }
+        List<Film> result = new ArrayList<>(found.size());
+        for (Integer id : new LinkedHashSet<>(ids)) {
+            Film film = found.get(id);
+            if (film != null) {
+                result.add(film);
+            }
+        }
+        return result;
+    }
+
+    // Версия фильма из кэша не требует обращения к БД
+    @Override
+    public long getVersion(int id) {
+        Film film = films.getIfPresent(id);
+        return film != null ? film.getVersion() : delegate.getVersion(id);
+    }
+
+    @Override
+    public Collection<Film> getAllFilms() {
+        return delegate.getAllFilms();
+    }
+
+    @Override
+    public Collection<Film> getPopularFilms(int count, Integer genreId, Integer year) {
+        return delegate.getPopularFilms(count, genreId, year);
+    }
+
+    @Override
+    public Collection<Film> getFilmsAfter(int afterId, int limit) {
+        return delegate.getFilmsAfter(afterId, limit);
+    }
+
+    @Override
+    public Collection<Film> getPopularFilms(int count, Integer genreId, Integer year, Set<FilmField> fields) {
+        return delegate.getPopularFilms(count, genreId, year, fields);
+    }
+
+    @Override
+    public Collection<Film> getFilmsAfter(int afterId, int limit, Set<FilmField> fields) {
+        return delegate.getFilmsAfter(afterId, limit, fields);
+    }
+
+    @Override
+    public Film addFilm(Film film) {
+        return delegate.addFilm(film);
+    }
+
+    @Override
+    public List<Film> addFilms(List<Film> films) {
+        return delegate.addFilms(films);
+    }
+
+    @Override
+    public Film updateFilm(Film film) {
+        try {
+            return delegate.updateFilm(film);
+        } finally {
+            films.invalidate(film.getId());
+        }
+    }
+
+    @Override
+    public boolean addLike(int filmId, int userId) {
+        try {
+            return delegate.addLike(filmId, userId);
+        } finally {
+            films.invalidate(filmId);
+        }
+    }
+
+    @Override
+    public boolean removeLike(int filmId, int userId) {
+        try {
+            return delegate.removeLike(filmId, userId);
+        } finally {
+            films.invalidate(filmId);
+        }
+    }
+
+    // При отложенной записи в кэш мог попасть фильм с ещё не записанными лайками и временной версией,
+    // а пакет мог часть из них отбросить: после записи пакета его фильмы перечитываются из хранилища
+    @EventListener
+    public void onLikesSaved(LikesSavedEvent event) {
+        Set<Integer> filmIds = new HashSet<>();
+        for (List<FilmLike> likes : List.of(event.added(), event.removed(), event.rejected())) {
+            for (FilmLike like : likes) {
+                filmIds.add(like.filmId());
+            }
+        }
+        films.invalidateAll(filmIds);
+    }
+
+    @Override
+    public Set<Integer> getLikes(int filmId) {
+        return delegate.getLikes(filmId);
+    }
+}
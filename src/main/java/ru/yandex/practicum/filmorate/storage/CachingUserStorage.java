@@ -0,0 +1,122 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Кэш пользователей (вместе с друзьями) перед хранилищем. Через кэш идёт только чтение по id.
+ * Обновление пользователя сбрасывает его запись, изменение дружбы - записи обоих пользователей.
+ * Пользователи из кэша общие для всех вызывающих, поэтому изменять их нельзя.
+ * Подключается в {@link StorageConfig} настройкой filmorate.cache.enabled.
+ */
+public class CachingUserStorage implements UserStorage {
+    private final UserStorage delegate;
+    private final Cache<Integer, User> users;
+
+    public CachingUserStorage(UserStorage delegate, Cache<Integer, User> users) {
+        this.delegate = delegate;
+        this.users = users;
+    }
+
+    // Загрузка держит запись занятой, поэтому invalidate после записи в БД не пропустит устаревшего пользователя
+    @Override
+    public User getById(int id) {
+        return users.get(id, delegate::getById);
+    }
+
+    // Версия пользователя из кэша не требует обращения к БД
+    @Override
+    public long getVersion(int id) {
+        User user = users.getIfPresent(id);
+        return user != null ? user.getVersion() : delegate.getVersion(id);
+    }
+
+    @Override
+    public Collection<User> getAllUsers() {
+        return delegate.getAllUsers();
+    }
+
+    @Override
+    public Collection<User> getUsersAfter(int afterId, int limit) {
+        return delegate.getUsersAfter(afterId, limit);
+    }
+
+    @Override
+    public User addUser(User user) {
+        return delegate.addUser(user);
+    }
+
+    @Override
+    public List<User> addUsers(List<User> users) {
+        return delegate.addUsers(users);
+    }
+
+    @Override
+    public User updateUser(User user) {
+        try {
+            return delegate.updateUser(user);
+        } finally {
+            users.invalidate(user.getId());
+        }
+    }
+
+    @Override
+    public void addFriend(int userId, int friendId) {
+        try {
+            delegate.addFriend(userId, friendId);
+        } finally {
+            users.invalidateAll(List.of(userId, friendId));
+        }
+    }
+
+    @Override
+    public void confirmFriend(int userId, int friendId) {
+        try {
+            delegate.confirmFriend(userId, friendId);
+        } finally {
+            users.invalidateAll(List.of(userId, friendId));
+        }
+    }
+
+    @Override
+    public void declineFriend(int userId, int friendId) {
+        try {
+            delegate.declineFriend(userId, friendId);
+        } finally {
+            users.invalidateAll(List.of(userId, friendId));
+        }
+    }
+
+    @Override
+    public void removeFriend(int userId, int friendId) {
+        try {
+            delegate.removeFriend(userId, friendId);
+        } finally {
+            users.invalidateAll(List.of(userId, friendId));
+        }
+    }
+
+    @Override
+    public Set<Integer> getFriends(int userId) {
+        return delegate.getFriends(userId);
+    }
+
+    @Override
+    public List<User> getFriendUsers(int userId) {
+        return delegate.getFriendUsers(userId);
+    }
+
+    @Override
+    public List<User> getFriendRequests(int userId) {
+        return delegate.getFriendRequests(userId);
+    }
+
+    @Override
+    public List<User> getCommonFriends(int userId, int otherId) {
+        return delegate.getCommonFriends(userId, otherId);
+    }
+}
@@ -0,0 +1,225 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.model.Event;
+import ru.yandex.practicum.filmorate.model.EventOperation;
+import ru.yandex.practicum.filmorate.model.EventType;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Журнал событий в таблице events. Хранилища фильмов и пользователей пишут события в event_outbox
+ * в своих же транзакциях, поэтому событие сохраняется только вместе с изменением. id из identity
+ * выдаются при вставке, а транзакции фиксируются в другом порядке, и курсор по ним перескочил бы
+ * событие, зафиксированное позже события с большим id. Поэтому в events зафиксированные события
+ * переносит фоновый поток, по одному пакету за раз: id в events растут в порядке фиксации.
+ * Запись лайков и дружбы при этом только вставляет строку в event_outbox, а событие появляется
+ * в ленте с задержкой до filmorate.events.append-interval-ms. Поток просыпается только после фиксации
+ * транзакции, записавшей событие, и без записей в базу не ходит.
+ */
+@Slf4j
+@Repository
+@ConditionalOnProperty(name = "filmorate.storage.type", havingValue = "db", matchIfMissing = true)
+public class EventDbStorage implements EventStorage {
+    private static final String INSERT_SQL =
+            "INSERT INTO event_outbox (user_id, event_type, operation, entity_id) VALUES (?, ?, ?, ?)";
+    private static final int APPEND_CHUNK_SIZE = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    // Пакеты переносятся строго по одному, иначе id в events снова перемешались бы
+    private final Lock appendLock = new ReentrantLock();
+    // null - фоновый перенос выключен, события переносит только flush()
+    private final ScheduledExecutorService appender;
+    private final long appendIntervalMillis;
+    // Запуск уже запланирован: события, зафиксированные до него, он и перенесёт
+    private final AtomicBoolean appendScheduled = new AtomicBoolean();
+
+    public EventDbStorage(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                          @Value("${filmorate.events.append-interval-ms:100}") long appendIntervalMillis,
+                          @Value("${filmorate.events.background-append.enabled:true}") boolean backgroundAppend) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.appendIntervalMillis = appendIntervalMillis;
+        this.appender = backgroundAppend
+                ? Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform()
+                        .name("event-appender")
+                        .daemon(true)
+                        .factory())
+                : null;
+        // В event_outbox могли остаться события, не перенесённые до остановки
+        scheduleAppend();
+    }
+
+    private final RowMapper<Event> eventRowMapper = (rs, rowNum) -> new Event(
+            rs.getLong("event_id"),
+            rs.getInt("user_id"),
+            EventType.valueOf(rs.getString("event_type")),
+            EventOperation.valueOf(rs.getString("operation")),
+            rs.getInt("entity_id"),
+            rs.getTimestamp("created_at").getTime());
+
+    // Строка event_outbox: в eventId пока лежит outbox_id
+    private final RowMapper<Event> outboxRowMapper = (rs, rowNum) -> new Event(
+            rs.getLong("outbox_id"),
+            rs.getInt("user_id"),
+            EventType.valueOf(rs.getString("event_type")),
+            EventOperation.valueOf(rs.getString("operation")),
+            rs.getInt("entity_id"),
+            rs.getTimestamp("created_at").getTime());
+
+    @Override
+    public void addEvent(int userId, EventType eventType, EventOperation operation, int entityId) {
+        jdbcTemplate.update(INSERT_SQL, userId, eventType.name(), operation.name(), entityId);
+        scheduleAppendAfterCommit();
+    }
+
+    @Override
+    public void addEvents(List<Event> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        List<Object[]> args = new ArrayList<>(events.size());
+        for (Event event : events) {
+            args.add(new Object[]{event.userId(), event.eventType().name(), event.operation().name(),
+                    event.entityId()});
+        }
+        jdbcTemplate.batchUpdate(INSERT_SQL, args);
+        scheduleAppendAfterCommit();
+    }
+
+    /**
+     * Каждый пользователь читается отдельным подзапросом по индексу events(user_id, event_id) и отдаёт
+     * не больше limit событий после курсора, так что объём чтения не зависит от активности друзей.
+     */
+    @Override
+    public List<Event> getEvents(Collection<Integer> userIds, long afterEventId, int limit) {
+        if (userIds.isEmpty()) {
+            return List.of();
+        }
+        List<String> perUser = new ArrayList<>(userIds.size());
+        List<Object> args = new ArrayList<>(userIds.size() * 3 + 1);
+        for (Integer userId : userIds) {
+            perUser.add("(SELECT * FROM events WHERE user_id = ? AND event_id > ? ORDER BY event_id LIMIT ?)");
+            args.add(userId);
+            args.add(afterEventId);
+            args.add(limit);
+        }
+        String sql = "SELECT * FROM (" + String.join(" UNION ALL ", perUser) + ") AS e ORDER BY event_id LIMIT ?";
+        args.add(limit);
+        return jdbcTemplate.query(sql, eventRowMapper, args.toArray());
+    }
+
+    // Переносит в events всё, что видно текущей транзакции, не дожидаясь фонового потока
+    @Override
+    public void flush() {
+        appendLock.lock();
+        try {
+            int moved;
+            do {
+                moved = transactionTemplate.execute(status -> appendChunk());
+            } while (moved == APPEND_CHUNK_SIZE);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        if (appender == null) {
+            return;
+        }
+        appender.shutdown();
+        try {
+            appender.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flushQuietly();
+    }
+
+    // Переносятся только прочитанные строки: незафиксированные останутся до следующего раза
+    private int appendChunk() {
+        List<Event> pending = jdbcTemplate.query("SELECT * FROM event_outbox ORDER BY outbox_id LIMIT ?",
+                outboxRowMapper, APPEND_CHUNK_SIZE);
+        if (pending.isEmpty()) {
+            return 0;
+        }
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO events (user_id, event_type, operation, entity_id, created_at) VALUES (?, ?, ?, ?, ?)",
+                pending.stream().map(event -> new Object[]{event.userId(), event.eventType().name(),
+                        event.operation().name(), event.entityId(), new Timestamp(event.timestamp())}).toList());
+        jdbcTemplate.batchUpdate("DELETE FROM event_outbox WHERE outbox_id = ?",
+                pending.stream().map(event -> new Object[]{event.eventId()}).toList());
+        return pending.size();
+    }
+
+    // Откаченная транзакция событий не оставила, и будить поток незачем
+    private void scheduleAppendAfterCommit() {
+        if (appender == null) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    scheduleAppend();
+                }
+            });
+        } else {
+            scheduleAppend();
+        }
+    }
+
+    // События, зафиксированные за интервал, переносятся одним запуском
+    private void scheduleAppend() {
+        if (appender == null || !appendScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            appender.schedule(this::append, appendIntervalMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Поток остановлен: оставшееся перенесёт close() или следующий запуск приложения
+            appendScheduled.set(false);
+        }
+    }
+
+    // Флаг снимается до переноса: событие, зафиксированное во время переноса, запланирует новый запуск
+    private void append() {
+        appendScheduled.set(false);
+        if (!flushQuietly()) {
+            scheduleAppend();
+        }
+    }
+
+    private boolean flushQuietly() {
+        try {
+            flush();
+            return true;
+        } catch (RuntimeException e) {
+            // Строки остаются в event_outbox и будут перенесены следующим запуском
+            log.error("Не удалось перенести события в журнал: {}", e.getMessage(), e);
+            return false;
+        }
+    }
+}
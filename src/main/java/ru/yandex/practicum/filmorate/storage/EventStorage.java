@@ -0,0 +1,26 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import ru.yandex.practicum.filmorate.model.Event;
+import ru.yandex.practicum.filmorate.model.EventOperation;
+import ru.yandex.practicum.filmorate.model.EventType;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Журнал событий для ленты. Записи только добавляются, id событий растут, поэтому страницы
+ * читаются по курсору "после события afterEventId".
+ */
+public interface EventStorage {
+    void addEvent(int userId, EventType eventType, EventOperation operation, int entityId);
+
+    // События без id и времени: их назначает хранилище
+    void addEvents(List<Event> events);
+
+    // События пользователей userIds с id больше afterEventId, по возрастанию id
+    List<Event> getEvents(Collection<Integer> userIds, long afterEventId, int limit);
+
+    // Делает уже записанные события видимыми для getEvents сразу: для тех, кому нужно читать свои записи
+    default void flush() {
+    }
+}
@@ -2,31 +2,52 @@ package ru.yandex.practicum.filmorate.storage;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.Event;
+import ru.yandex.practicum.filmorate.model.EventOperation;
+import ru.yandex.practicum.filmorate.model.EventType;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmField;
+import ru.yandex.practicum.filmorate.model.FilmLike;
 import ru.yandex.practicum.filmorate.model.Genre;
-import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.IntSet;
 
 import java.sql.Date;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
 import java.util.*;
 
 @Slf4j
 @Repository
 @Qualifier("filmDbStorage")
+@ConditionalOnProperty(name = "filmorate.storage.type", havingValue = "db", matchIfMissing = true)
 public class FilmDbStorage implements FilmStorage {
     private final JdbcTemplate jdbcTemplate;
+    private final ReferenceDataCache referenceDataCache;
+    private final EventStorage eventStorage;
 
-    public FilmDbStorage(JdbcTemplate jdbcTemplate) {
+    public FilmDbStorage(JdbcTemplate jdbcTemplate, ReferenceDataCache referenceDataCache,
+                         EventStorage eventStorage) {
         this.jdbcTemplate = jdbcTemplate;
+        this.referenceDataCache = referenceDataCache;
+        this.eventStorage = eventStorage;
     }
 
-    private final RowMapper<Film> filmRowMapper = (rs, rowNum) -> {
+    private final RowMapper<Film> filmRowMapper = this::mapFilm;
+
+    private Film mapFilm(ResultSet rs, int rowNum) throws SQLException {
         Film film = new Film();
         film.setId(rs.getInt("film_id"));
         film.setName(rs.getString("name"));
@@ -36,44 +57,147 @@ public class FilmDbStorage implements FilmStorage {
         if (releaseDate != null) {
             film.setReleaseDate(releaseDate.toLocalDate());
         }
-        Integer mpaId = rs.getInt("mpa_id");
-        if (!rs.wasNull() && mpaId != null) {
-            Mpa mpa = new Mpa();
-            mpa.setId(mpaId);
-            film.setMpa(mpa);
+        // Полный MPA берётся из кэша справочников, без запроса к mpa_ratings
+        int mpaId = rs.getInt("mpa_id");
+        if (!rs.wasNull()) {
+            film.setMpa(referenceDataCache.getMpa(mpaId));
         }
+        film.setLikeCount(rs.getInt("like_count"));
+        film.setVersion(rs.getLong("version"));
+        film.setGenres(new LinkedHashSet<>());
         return film;
-    };
-
-    // RowMapper для Genre
-    private final RowMapper<Genre> genreRowMapper = (rs, rowNum) -> {
-        Genre genre = new Genre();
-        genre.setId(rs.getInt("genre_id"));
-        genre.setName(rs.getString("name"));
-        return genre;
-    };
+    }
 
     @Override
     public Collection<Film> getAllFilms() {
-        String sql = "SELECT * FROM films";
+        String sql = "SELECT * FROM films ORDER BY film_id";
         List<Film> films = jdbcTemplate.query(sql, filmRowMapper);
+        loadGenresAndLikes(films, true);
+        return films;
+    }
 
-        for (Film film : films) {
-            Set<Integer> likes = getLikes(film.getId());
-            Set<Genre> genres = getFilmGenres(film.getId());
-            film.setLikes(likes);
-            film.setGenres(genres);
-
-            if (film.getMpa() != null) {
-                Mpa fullMpa = getMpaById(film.getMpa().getId());
-                film.setMpa(fullMpa);
+    // Фильтры - по индексам film_genres(genre_id, film_id) и films(release_date), в БД сортируется
+    // и обрезается до count только отобранное
+    @Override
+    public Collection<Film> getPopularFilms(int count, Integer genreId, Integer year) {
+        List<Object> args = new ArrayList<>();
+        String sql = "SELECT f.* FROM films f" + popularFilter(genreId, year, args)
+                + " ORDER BY f.like_count DESC, f.film_id LIMIT ?";
+        args.add(count);
+        List<Film> films = jdbcTemplate.query(sql, filmRowMapper, args.toArray());
+        loadGenresAndLikes(films, false);
+        return films;
+    }
+
+    @Override
+    public Collection<Film> getPopularFilms(int count, Integer genreId, Integer year, Set<FilmField> fields) {
+        List<Object> args = new ArrayList<>();
+        String sql = "SELECT " + projectedColumns(fields) + " FROM films f" + popularFilter(genreId, year, args)
+                + " ORDER BY f.like_count DESC, f.film_id LIMIT ?";
+        args.add(count);
+        return queryProjected(sql, fields, args.toArray());
+    }
+
+    @Override
+    public Collection<Film> getFilmsAfter(int afterId, int limit) {
+        String sql = "SELECT * FROM films WHERE film_id > ? ORDER BY film_id LIMIT ?";
+        List<Film> films = jdbcTemplate.query(sql, filmRowMapper, afterId, limit);
+        loadGenresAndLikes(films, false);
+        return films;
+    }
+
+    @Override
+    public Collection<Film> getFilmsAfter(int afterId, int limit, Set<FilmField> fields) {
+        String sql = "SELECT " + projectedColumns(fields) + " FROM films f WHERE f.film_id > ? ORDER BY f.film_id LIMIT ?";
+        return queryProjected(sql, fields, afterId, limit);
+    }
+
+    private static String popularFilter(Integer genreId, Integer year, List<Object> args) {
+        StringBuilder where = new StringBuilder(" WHERE 1 = 1");
+        if (genreId != null) {
+            where.append(" AND EXISTS (SELECT 1 FROM film_genres fg WHERE fg.genre_id = ? AND fg.film_id = f.film_id)");
+            args.add(genreId);
+        }
+        if (year != null) {
+            where.append(" AND f.release_date >= ? AND f.release_date < ?");
+            args.add(Date.valueOf(LocalDate.of(year, 1, 1)));
+            args.add(Date.valueOf(LocalDate.of(year + 1, 1, 1)));
+        }
+        return where.toString();
+    }
+
+    // Колонки films под запрошенные поля; у жанров своя таблица, лайки в проекции не читаются вовсе
+    private static String projectedColumns(Set<FilmField> fields) {
+        StringJoiner columns = new StringJoiner(", ");
+        columns.add("f.film_id");
+        for (FilmField field : fields) {
+            switch (field) {
+                case NAME -> columns.add("f.name");
+                case DESCRIPTION -> columns.add("f.description");
+                case RELEASE_DATE -> columns.add("f.release_date");
+                case DURATION -> columns.add("f.duration");
+                case MPA -> columns.add("f.mpa_id");
+                case LIKE_COUNT -> columns.add("f.like_count");
+                default -> {
+                }
             }
         }
+        return columns.toString();
+    }
 
+    private List<Film> queryProjected(String sql, Set<FilmField> fields, Object... args) {
+        List<Film> films = jdbcTemplate.query(sql, (rs, rowNum) -> mapProjected(rs, fields), args);
+        if (fields.contains(FilmField.GENRES) && !films.isEmpty()) {
+            loadGenres(filmsById(films), false);
+        }
+        return films;
+    }
+
+    private Film mapProjected(ResultSet rs, Set<FilmField> fields) throws SQLException {
+        Film film = new Film();
+        film.setId(rs.getInt("film_id"));
+        if (fields.contains(FilmField.NAME)) {
+            film.setName(rs.getString("name"));
+        }
+        if (fields.contains(FilmField.DESCRIPTION)) {
+            film.setDescription(rs.getString("description"));
+        }
+        if (fields.contains(FilmField.RELEASE_DATE)) {
+            Date releaseDate = rs.getDate("release_date");
+            if (releaseDate != null) {
+                film.setReleaseDate(releaseDate.toLocalDate());
+            }
+        }
+        if (fields.contains(FilmField.DURATION)) {
+            film.setDuration(rs.getInt("duration"));
+        }
+        if (fields.contains(FilmField.MPA)) {
+            int mpaId = rs.getInt("mpa_id");
+            if (!rs.wasNull()) {
+                film.setMpa(referenceDataCache.getMpa(mpaId));
+            }
+        }
+        if (fields.contains(FilmField.LIKE_COUNT)) {
+            film.setLikeCount(rs.getInt("like_count"));
+        }
+        film.setGenres(new LinkedHashSet<>());
+        return film;
+    }
+
+    @Override
+    public List<Film> getFilmsByIds(Collection<Integer> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        String placeholders = String.join(",", Collections.nCopies(ids.size(), "?"));
+        String sql = "SELECT * FROM films WHERE film_id IN (" + placeholders + ") ORDER BY film_id";
+        List<Film> films = jdbcTemplate.query(sql, filmRowMapper, ids.toArray());
+        loadGenresAndLikes(films, false);
         return films;
     }
 
     @Override
+    @Transactional
     public Film addFilm(Film film) {
         String sql = """
             INSERT INTO films (name, description, release_date, duration, mpa_id)
@@ -96,19 +220,93 @@ public class FilmDbStorage implements FilmStorage {
 
         saveFilmGenres(film.getId(), film.getGenres());
 
-        return getById(film.getId());
+        // Новый фильм собирается из переданных данных: лайков нет, версия и счётчик - значения по умолчанию
+        film.setMpa(referenceDataCache.getMpa(film.getMpa().getId()));
+        film.setGenres(resolveGenres(film.getGenres() != null ? genreIds(film.getGenres()) : Set.of()));
+        film.setLikes(new IntSet());
+        film.setLikeCount(0);
+        film.setVersion(0);
+        return film;
+    }
+
+    // Пачка фильмов вставляется одним JDBC-батчем с получением сгенерированных ключей
+    @Override
+    @Transactional
+    public List<Film> addFilms(List<Film> films) {
+        if (films.isEmpty()) {
+            return films;
+        }
+
+        String sql = """
+            INSERT INTO films (name, description, release_date, duration, mpa_id)
+            VALUES (?, ?, ?, ?, ?)
+            """;
+
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+
+        jdbcTemplate.batchUpdate(
+                connection -> connection.prepareStatement(sql, new String[]{"film_id"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        Film film = films.get(i);
+                        ps.setString(1, film.getName());
+                        ps.setString(2, film.getDescription());
+                        ps.setDate(3, Date.valueOf(film.getReleaseDate()));
+                        ps.setInt(4, film.getDuration());
+                        ps.setInt(5, film.getMpa().getId());
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return films.size();
+                    }
+                },
+                keyHolder);
+
+        List<Object[]> genreArgs = new ArrayList<>();
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        for (int i = 0; i < films.size(); i++) {
+            Film film = films.get(i);
+            film.setId(((Number) keys.get(i).values().iterator().next()).intValue());
+            if (film.getGenres() != null) {
+                for (Integer genreId : genreIds(film.getGenres())) {
+                    genreArgs.add(new Object[]{film.getId(), genreId});
+                }
+            }
+        }
+
+        if (!genreArgs.isEmpty()) {
+            jdbcTemplate.batchUpdate("INSERT INTO film_genres (film_id, genre_id) VALUES (?, ?)", genreArgs);
+        }
+
+        return films;
     }
 
     @Override
+    @Transactional
     public Film updateFilm(Film film) {
+        // Одним запросом: обновление строки и то, чего нет в переданном фильме - счётчик и версия после
+        // обновления, текущие жанры для расчёта разницы и лайки. Пустой результат - фильма нет
         String sql = """
-            UPDATE films
-            SET name = ?, description = ?, release_date = ?, duration = ?, mpa_id = ?
-            WHERE film_id = ?
+            SELECT f.like_count, f.version,
+                ARRAY(SELECT genre_id FROM film_genres WHERE film_id = f.film_id ORDER BY genre_id) AS genre_ids,
+                ARRAY(SELECT user_id FROM likes WHERE film_id = f.film_id ORDER BY user_id) AS like_ids
+            FROM FINAL TABLE (
+                UPDATE films
+                SET name = ?, description = ?, release_date = ?, duration = ?, mpa_id = ?, version = version + 1
+                WHERE film_id = ?
+            ) f
             """;
 
-        int rowsAffected = jdbcTemplate.update(
-                sql,
+        List<Film> updated = jdbcTemplate.query(sql, (rs, rowNum) -> {
+            Film stored = new Film();
+            stored.setLikeCount(rs.getInt("like_count"));
+            stored.setVersion(rs.getLong("version"));
+            stored.setGenres(resolveGenres(toIntSet(rs.getArray("genre_ids"))));
+            stored.setLikes(toIntSet(rs.getArray("like_ids")));
+            return stored;
+        },
                 film.getName(),
                 film.getDescription(),
                 Date.valueOf(film.getReleaseDate()),
@@ -117,120 +315,299 @@ public class FilmDbStorage implements FilmStorage {
                 film.getId()
         );
 
-        if (rowsAffected == 0) {
+        if (updated.isEmpty()) {
             throw new NotFoundException("Фильм с ID " + film.getId() + " не найден");
         }
+        Film stored = updated.get(0);
 
-        updateFilmGenres(film.getId(), film.getGenres());
+        // Пустой список жанров, как и раньше, оставляет жанры фильма без изменений
+        if (film.getGenres() != null && !film.getGenres().isEmpty()) {
+            Set<Integer> newGenreIds = genreIds(film.getGenres());
+            updateFilmGenres(film.getId(), genreIds(stored.getGenres()), newGenreIds);
+            stored.setGenres(resolveGenres(newGenreIds));
+        }
 
-        return getById(film.getId());
+        film.setMpa(referenceDataCache.getMpa(film.getMpa().getId()));
+        film.setGenres(stored.getGenres());
+        film.setLikes(stored.getLikes());
+        film.setLikeCount(stored.getLikeCount());
+        film.setVersion(stored.getVersion());
+        return film;
     }
 
     @Override
     public Film getById(int id) {
+        // Жанры и лайки приходят массивами в той же строке: один запрос к БД вместо трёх последовательных
+        String sql = "SELECT f.*, " +
+                "ARRAY(SELECT genre_id FROM film_genres WHERE film_id = f.film_id ORDER BY genre_id) AS genre_ids, " +
+                "ARRAY(SELECT user_id FROM likes WHERE film_id = f.film_id ORDER BY user_id) AS like_ids " +
+                "FROM films f WHERE f.film_id = ?";
         try {
-            String sql = "SELECT * FROM films WHERE film_id = ?";
-            Film film = jdbcTemplate.queryForObject(sql, filmRowMapper, id);
+            return jdbcTemplate.queryForObject(sql, (rs, rowNum) -> {
+                Film film = mapFilm(rs, rowNum);
+                film.setGenres(resolveGenres(toIntSet(rs.getArray("genre_ids"))));
+                film.setLikes(toIntSet(rs.getArray("like_ids")));
+                return film;
+            }, id);
+        } catch (Exception e) {
+            throw new NotFoundException("Фильм с ID " + id + " не найден");
+        }
+    }
 
-            if (film != null) {
-                Set<Integer> likes = getLikes(id);
-                Set<Genre> genres = getFilmGenres(id);
-                film.setLikes(likes);
-                film.setGenres(genres);
-
-                if (film.getMpa() != null) {
-                    Mpa fullMpa = getMpaById(film.getMpa().getId());
-                    film.setMpa(fullMpa);
-                }
-            }
+    private static IntSet toIntSet(java.sql.Array array) throws SQLException {
+        Object[] values = (Object[]) array.getArray();
+        IntSet ids = new IntSet(values.length);
+        for (Object value : values) {
+            ids.add(((Number) value).intValue());
+        }
+        return ids;
+    }
 
-            return film;
-        } catch (Exception e) {
+    // Жанры в порядке id, как их отдаёт чтение фильма, с названиями из кэша справочников
+    private Set<Genre> resolveGenres(Set<Integer> genreIds) {
+        Set<Genre> genres = new LinkedHashSet<>();
+        genreIds.stream().sorted().forEach(genreId -> genres.add(referenceDataCache.getGenre(genreId)));
+        return genres;
+    }
+
+    @Override
+    public long getVersion(int id) {
+        List<Long> versions = jdbcTemplate.queryForList(
+                "SELECT version FROM films WHERE film_id = ?", Long.class, id);
+        if (versions.isEmpty()) {
             throw new NotFoundException("Фильм с ID " + id + " не найден");
         }
+        return versions.get(0);
     }
 
     @Override
-    public void addLike(int filmId, int userId) {
-        String sql = "INSERT INTO likes (film_id, user_id) VALUES (?, ?)";
+    @Transactional
+    public boolean addLike(int filmId, int userId) {
+        // MERGE без WHEN MATCHED вставляет строку только если её нет: 1 - новый лайк, 0 - повторный
+        String sql = "MERGE INTO likes l " +
+                "USING (VALUES (CAST(? AS INTEGER), CAST(? AS INTEGER))) AS v(film_id, user_id) " +
+                "ON l.film_id = v.film_id AND l.user_id = v.user_id " +
+                "WHEN NOT MATCHED THEN INSERT (film_id, user_id) VALUES (v.film_id, v.user_id)";
+        int inserted;
         try {
-            jdbcTemplate.update(sql, filmId, userId);
-        } catch (Exception e) {
+            inserted = jdbcTemplate.update(sql, filmId, userId);
+        } catch (DuplicateKeyException e) {
+            // Тот же лайк параллельно вставила другая транзакция
+            inserted = 0;
+        } catch (DataIntegrityViolationException e) {
+            throw new NotFoundException("Фильм с id = " + filmId + " или пользователь с id = " + userId + " не найден");
+        }
+
+        if (inserted == 0) {
             log.warn("Пользователь {} уже поставил лайк фильму {}", userId, filmId);
+            return false;
         }
+        jdbcTemplate.update("UPDATE films SET like_count = like_count + 1, version = version + 1 WHERE film_id = ?", filmId);
+        eventStorage.addEvent(userId, EventType.LIKE, EventOperation.ADD, filmId);
+        return true;
     }
 
     @Override
-    public void removeLike(int filmId, int userId) {
+    @Transactional
+    public boolean removeLike(int filmId, int userId) {
         String sql = "DELETE FROM likes WHERE film_id = ? AND user_id = ?";
         int rowsAffected = jdbcTemplate.update(sql, filmId, userId);
 
         if (rowsAffected == 0) {
             log.warn("Лайк пользователя {} для фильма {} не найден", userId, filmId);
+            return false;
+        }
+        jdbcTemplate.update("UPDATE films SET like_count = like_count - 1, version = version + 1 WHERE film_id = ?", filmId);
+        eventStorage.addEvent(userId, EventType.LIKE, EventOperation.REMOVE, filmId);
+        return true;
+    }
+
+    /**
+     * Пакетно применяет накопленные лайки и снятия лайков, пересчитывая like_count одним пакетом.
+     * Лайки с несуществующими фильмами или пользователями пропускаются. Возвращает то, что реально изменилось.
+     */
+    @Transactional
+    public LikesSavedEvent saveLikeChanges(List<FilmLike> likes, List<FilmLike> unlikes) {
+        Map<Integer, Integer> deltas = new HashMap<>();
+        List<Event> events = new ArrayList<>();
+        List<FilmLike> added = new ArrayList<>();
+        List<FilmLike> removed = new ArrayList<>();
+
+        List<FilmLike> validLikes = withExistingIds(likes);
+        List<FilmLike> rejected = new ArrayList<>(likes);
+        rejected.removeAll(new HashSet<>(validLikes));
+        if (validLikes.size() < likes.size()) {
+            log.warn("Пропущено {} лайков с несуществующими фильмами или пользователями",
+                    likes.size() - validLikes.size());
+        }
+        if (!validLikes.isEmpty()) {
+            String sql = "MERGE INTO likes l " +
+                    "USING (VALUES (CAST(? AS INTEGER), CAST(? AS INTEGER))) AS v(film_id, user_id) " +
+                    "ON l.film_id = v.film_id AND l.user_id = v.user_id " +
+                    "WHEN NOT MATCHED THEN INSERT (film_id, user_id) VALUES (v.film_id, v.user_id)";
+            int[] inserted = jdbcTemplate.batchUpdate(sql, toArgs(validLikes));
+            for (int i = 0; i < inserted.length; i++) {
+                if (inserted[i] > 0) {
+                    deltas.merge(validLikes.get(i).filmId(), 1, Integer::sum);
+                    events.add(likeEvent(validLikes.get(i), EventOperation.ADD));
+                    added.add(validLikes.get(i));
+                }
+            }
         }
+
+        if (!unlikes.isEmpty()) {
+            int[] deleted = jdbcTemplate.batchUpdate(
+                    "DELETE FROM likes WHERE film_id = ? AND user_id = ?", toArgs(unlikes));
+            for (int i = 0; i < deleted.length; i++) {
+                if (deleted[i] > 0) {
+                    deltas.merge(unlikes.get(i).filmId(), -1, Integer::sum);
+                    events.add(likeEvent(unlikes.get(i), EventOperation.REMOVE));
+                    removed.add(unlikes.get(i));
+                }
+            }
+        }
+
+        // Версия растёт и при нулевом итоге: состав лайков фильма всё равно изменился
+        List<Object[]> countUpdates = new ArrayList<>();
+        deltas.forEach((filmId, delta) -> countUpdates.add(new Object[]{delta, filmId}));
+        if (!countUpdates.isEmpty()) {
+            jdbcTemplate.batchUpdate(
+                    "UPDATE films SET like_count = like_count + ?, version = version + 1 WHERE film_id = ?",
+                    countUpdates);
+        }
+        eventStorage.addEvents(events);
+        return new LikesSavedEvent(added, removed, rejected);
+    }
+
+    private static Event likeEvent(FilmLike like, EventOperation operation) {
+        return new Event(0, like.userId(), EventType.LIKE, operation, like.filmId(), 0);
+    }
+
+    // Отсеивает лайки с несуществующими id двумя запросами, чтобы пакет не упал на внешнем ключе
+    private List<FilmLike> withExistingIds(List<FilmLike> likes) {
+        if (likes.isEmpty()) {
+            return likes;
+        }
+        Set<Integer> filmIds = new HashSet<>(existingIds("films", "film_id",
+                likes.stream().map(FilmLike::filmId).distinct().toArray()));
+        Set<Integer> userIds = new HashSet<>(existingIds("users", "user_id",
+                likes.stream().map(FilmLike::userId).distinct().toArray()));
+        return likes.stream()
+                .filter(like -> filmIds.contains(like.filmId()) && userIds.contains(like.userId()))
+                .toList();
+    }
+
+    private List<Integer> existingIds(String table, String idColumn, Object[] ids) {
+        String placeholders = String.join(",", Collections.nCopies(ids.length, "?"));
+        String sql = "SELECT " + idColumn + " FROM " + table + " WHERE " + idColumn + " IN (" + placeholders + ")";
+        return jdbcTemplate.queryForList(sql, Integer.class, ids);
+    }
+
+    private List<Object[]> toArgs(List<FilmLike> likes) {
+        return likes.stream()
+                .map(like -> new Object[]{like.filmId(), like.userId()})
+                .toList();
     }
 
     @Override
     public Set<Integer> getLikes(int filmId) {
-        String sql = "SELECT user_id FROM likes WHERE film_id = ?";
+        String sql = "SELECT user_id FROM likes WHERE film_id = ? ORDER BY user_id";
         try {
-            return new HashSet<>(jdbcTemplate.queryForList(sql, Integer.class, filmId));
+            IntSet likes = new IntSet();
+            jdbcTemplate.query(sql, rs -> {
+                likes.add(rs.getInt("user_id"));
+            }, filmId);
+            return likes;
         } catch (Exception e) {
             log.error("Ошибка при получении лайков для фильма ID {}: {}", filmId, e.getMessage());
-            return new HashSet<>();
+            return new IntSet();
         }
     }
 
-    private Set<Genre> getFilmGenres(int filmId) {
-        String sql = "SELECT g.genre_id, g.name " +
-                "FROM genres g " +
-                "JOIN film_genres fg ON g.genre_id = fg.genre_id " +
-                "WHERE fg.film_id = ? " +
-                "ORDER BY g.genre_id";
-        try {
-            List<Genre> genresList = jdbcTemplate.query(sql, genreRowMapper, filmId);
-            return new LinkedHashSet<>(genresList);
-        } catch (Exception e) {
-            log.error("Ошибка при получении жанров для фильма ID {}: {}", filmId, e.getMessage());
-            return new LinkedHashSet<>();
+    // Жанры и лайки для списка фильмов загружаются двумя запросами вместо двух запросов на каждый фильм
+    private void loadGenresAndLikes(List<Film> films, boolean wholeCatalog) {
+        if (films.isEmpty()) {
+            return;
         }
+        Map<Integer, Film> filmsById = filmsById(films);
+        loadGenres(filmsById, wholeCatalog);
+        loadLikes(filmsById, wholeCatalog);
     }
 
-    // Метод для получения полной информации о MPA (с названием)
-    private Mpa getMpaById(int mpaId) {
-        String sql = "SELECT * FROM mpa_ratings WHERE mpa_id = ?";
-        try {
-            RowMapper<Mpa> mpaRowMapper = (rs, rowNum) -> {
-                Mpa mpa = new Mpa();
-                mpa.setId(rs.getInt("mpa_id"));
-                mpa.setName(rs.getString("name"));
-                mpa.setName(rs.getString("code"));
-                return mpa;
-            };
-            return jdbcTemplate.queryForObject(sql, mpaRowMapper, mpaId);
-        } catch (Exception e) {
-            log.error("MPA с ID {} не найден", mpaId);
-            return null;
+    private static Map<Integer, Film> filmsById(List<Film> films) {
+        Map<Integer, Film> filmsById = new HashMap<>();
+        for (Film film : films) {
+            filmsById.put(film.getId(), film);
+        }
+        return filmsById;
+    }
+
+    private static String filmIdFilter(Map<Integer, Film> filmsById, boolean wholeCatalog) {
+        if (wholeCatalog) {
+            return "";
         }
+        return "WHERE film_id IN (" + String.join(",", Collections.nCopies(filmsById.size(), "?")) + ") ";
+    }
+
+    private void loadGenres(Map<Integer, Film> filmsById, boolean wholeCatalog) {
+        String genresSql = "SELECT film_id, genre_id FROM film_genres " +
+                filmIdFilter(filmsById, wholeCatalog) +
+                "ORDER BY film_id, genre_id";
+        jdbcTemplate.query(genresSql, rs -> {
+            Film film = filmsById.get(rs.getInt("film_id"));
+            if (film != null) {
+                film.getGenres().add(referenceDataCache.getGenre(rs.getInt("genre_id")));
+            }
+        }, wholeCatalog ? new Object[0] : filmsById.keySet().toArray());
+    }
+
+    private void loadLikes(Map<Integer, Film> filmsById, boolean wholeCatalog) {
+        String likesSql = "SELECT film_id, user_id FROM likes " +
+                filmIdFilter(filmsById, wholeCatalog) +
+                "ORDER BY film_id, user_id";
+        jdbcTemplate.query(likesSql, rs -> {
+            Film film = filmsById.get(rs.getInt("film_id"));
+            if (film != null) {
+                film.getLikes().add(rs.getInt("user_id"));
+            }
+        }, wholeCatalog ? new Object[0] : filmsById.keySet().toArray());
     }
 
     private void saveFilmGenres(int filmId, Set<Genre> genres) {
         if (genres == null || genres.isEmpty()) {
             return;
         }
+        batchGenres("INSERT INTO film_genres (film_id, genre_id) VALUES (?, ?)", filmId, genreIds(genres));
+    }
 
-        String deleteSql = "DELETE FROM film_genres WHERE film_id = ?";
-        jdbcTemplate.update(deleteSql, filmId);
+    // Записывается только разница между текущим и новым набором жанров, одним батчем на удаление и вставку
+    private void updateFilmGenres(int filmId, Set<Integer> oldGenreIds, Set<Integer> newGenreIds) {
+        Set<Integer> removed = new LinkedHashSet<>(oldGenreIds);
+        removed.removeAll(newGenreIds);
+        Set<Integer> added = new LinkedHashSet<>(newGenreIds);
+        added.removeAll(oldGenreIds);
 
-        // Добавляем новые жанры
-        String insertSql = "INSERT INTO film_genres (film_id, genre_id) VALUES (?, ?)";
-        for (Genre genre : genres) {
-            jdbcTemplate.update(insertSql, filmId, genre.getId());
+        batchGenres("DELETE FROM film_genres WHERE film_id = ? AND genre_id = ?", filmId, removed);
+        batchGenres("INSERT INTO film_genres (film_id, genre_id) VALUES (?, ?)", filmId, added);
+    }
+
+    private void batchGenres(String sql, int filmId, Set<Integer> genreIds) {
+        if (genreIds.isEmpty()) {
+            return;
+        }
+        List<Object[]> batchArgs = new ArrayList<>(genreIds.size());
+        for (Integer genreId : genreIds) {
+            batchArgs.add(new Object[]{filmId, genreId});
         }
+        jdbcTemplate.batchUpdate(sql, batchArgs);
     }
 
-    private void updateFilmGenres(int filmId, Set<Genre> genres) {
-        saveFilmGenres(filmId, genres);
+    private Set<Integer> genreIds(Set<Genre> genres) {
+        Set<Integer> ids = new LinkedHashSet<>();
+        for (Genre genre : genres) {
+            ids.add(genre.getId());
+        }
+        return ids;
     }
 
     private String convertMpaNameToCode(String fullName) {
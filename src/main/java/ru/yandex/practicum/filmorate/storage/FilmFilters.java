@@ -0,0 +1,31 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+
+/**
+ * Фильтры топа фильмов для хранилищ, которые отбирают фильмы в памяти.
+ * Условия те же, что в SQL у {@link FilmDbStorage#getPopularFilms(int, Integer, Integer)}.
+ */
+final class FilmFilters {
+    private FilmFilters() {
+    }
+
+    static boolean matches(Film film, Integer genreId, Integer year) {
+        if (year != null && (film.getReleaseDate() == null || film.getReleaseDate().getYear() != year)) {
+            return false;
+        }
+        if (genreId == null) {
+            return true;
+        }
+        if (film.getGenres() == null) {
+            return false;
+        }
+        for (Genre genre : film.getGenres()) {
+            if (genreId.equals(genre.getId())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -1,23 +1,53 @@
 package ru.yandex.practicum.filmorate.storage;
 
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmField;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.Set;
 
 public interface FilmStorage {
 
     Collection<Film> getAllFilms();
 
+    // genreId и year необязательны: null - без фильтра
+    Collection<Film> getPopularFilms(int count, Integer genreId, Integer year);
+
+    Collection<Film> getFilmsAfter(int afterId, int limit);
+
+    /**
+     * Варианты для списков, где нужны не все поля: у фильмов заполнены только id и fields,
+     * остальные колонки, жанры и лайки хранилище может не читать.
+     */
+    Collection<Film> getPopularFilms(int count, Integer genreId, Integer year, Set<FilmField> fields);
+
+    Collection<Film> getFilmsAfter(int afterId, int limit, Set<FilmField> fields);
+
     Film addFilm(Film film);
 
+    List<Film> addFilms(List<Film> films);
+
     Film updateFilm(Film film);
 
     Film getById(int id);
 
-    void addLike(int filmId, int userId);
+    // Несуществующие id пропускаются, порядок фильмов не гарантируется
+    List<Film> getFilmsByIds(Collection<Integer> ids);
+
+    /**
+     * Версия фильма, которая меняется вместе с его представлением. Дешевле, чем {@link #getById(int)}.
+     */
+    long getVersion(int id);
+
+    /**
+     * Ставит лайк. Возвращает true, если лайк записан сейчас; false - если он уже был или запись
+     * отложена: тогда о записанных лайках сообщает {@link LikesSavedEvent}.
+     */
+    boolean addLike(int filmId, int userId);
 
-    void removeLike(int filmId, int userId);
+    // Возвращает true, если лайк был и снят сейчас
+    boolean removeLike(int filmId, int userId);
 
     Set<Integer> getLikes(int filmId);
 }
@@ -2,8 +2,6 @@ package ru.yandex.practicum.filmorate.storage;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
-import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Repository;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Genre;
@@ -13,43 +11,29 @@ import java.util.Collection;
 @Repository
 @Qualifier("genreDbStorage")
 public class GenreDbStorage implements GenreStorage {
-    private final JdbcTemplate jdbcTemplate;
+    private final ReferenceDataCache referenceDataCache;
 
     @Autowired
-    public GenreDbStorage(JdbcTemplate jdbcTemplate) {
-        this.jdbcTemplate = jdbcTemplate;
+    public GenreDbStorage(ReferenceDataCache referenceDataCache) {
+        this.referenceDataCache = referenceDataCache;
     }
 
-    private final RowMapper<Genre> genreRowMapper = (rs, rowNum) -> {
-        Genre genre = new Genre();
-        genre.setId(rs.getInt("genre_id"));
-        genre.setName(rs.getString("name"));
-        return genre;
-    };
-
     @Override
     public Collection<Genre> getAllGenres() {
-        String sql = "SELECT * FROM genres ORDER BY genre_id";
-        return jdbcTemplate.query(sql, (rs, rowNum) -> {
-            Genre genre = new Genre();
-            genre.setId(rs.getInt("genre_id"));
-            genre.setName(rs.getString("name"));
-            return genre;
-        });
+        return referenceDataCache.getAllGenres();
     }
 
     @Override
     public Genre getGenreById(int id) {
-        String sql = "SELECT * FROM genres WHERE genre_id = ?";
-        try {
-            return jdbcTemplate.queryForObject(sql, (rs, rowNum) -> {
-                Genre genre = new Genre();
-                genre.setId(rs.getInt("genre_id"));
-                genre.setName(rs.getString("name"));
-                return genre;
-            }, id);
-        } catch (Exception e) {
+        Genre genre = referenceDataCache.getGenre(id);
+        if (genre == null) {
             throw new NotFoundException("Жанр с ID " + id + " не найден");
         }
+        return genre;
+    }
+
+    @Override
+    public long getVersion() {
+        return referenceDataCache.getVersion();
     }
 }
@@ -8,4 +8,7 @@ public interface GenreStorage {
     Collection<Genre> getAllGenres();
 
     Genre getGenreById(int id);
+
+    // Меняется при любом изменении справочника жанров
+    long getVersion();
 }
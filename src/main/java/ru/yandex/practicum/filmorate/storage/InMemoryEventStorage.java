@@ -0,0 +1,77 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Event;
+import ru.yandex.practicum.filmorate.model.EventOperation;
+import ru.yandex.practicum.filmorate.model.EventType;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Журнал событий в памяти: у каждого пользователя свои события, упорядоченные по id.
+ * id выдаётся и событие публикуется под одной блокировкой, а читатели не заходят дальше последнего
+ * опубликованного id: иначе курсор мог бы перескочить событие, которое получило id, но ещё не добавлено.
+ * Включается настройкой {@code filmorate.storage.type=memory}.
+ */
+@Component
+@ConditionalOnProperty(name = "filmorate.storage.type", havingValue = "memory")
+public class InMemoryEventStorage implements EventStorage {
+    private final ConcurrentMap<Integer, ConcurrentNavigableMap<Long, Event>> eventsByUser = new ConcurrentHashMap<>();
+    private final Lock appendLock = new ReentrantLock();
+    private long lastId;
+    // Все события с id не больше этого уже видны читателям
+    private volatile long publishedId;
+
+    @Override
+    public void addEvent(int userId, EventType eventType, EventOperation operation, int entityId) {
+        ConcurrentNavigableMap<Long, Event> events =
+                eventsByUser.computeIfAbsent(userId, key -> new ConcurrentSkipListMap<>());
+        appendLock.lock();
+        try {
+            long id = ++lastId;
+            events.put(id, new Event(id, userId, eventType, operation, entityId, System.currentTimeMillis()));
+            publishedId = id;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    @Override
+    public void addEvents(List<Event> events) {
+        for (Event event : events) {
+            addEvent(event.userId(), event.eventType(), event.operation(), event.entityId());
+        }
+    }
+
+    @Override
+    public List<Event> getEvents(Collection<Integer> userIds, long afterEventId, int limit) {
+        long toEventId = publishedId;
+        if (afterEventId >= toEventId) {
+            return List.of();
+        }
+        List<Event> result = new ArrayList<>();
+        for (Integer userId : userIds) {
+            ConcurrentNavigableMap<Long, Event> events = eventsByUser.get(userId);
+            if (events != null) {
+                // С каждого пользователя достаточно первых limit событий после курсора
+                events.subMap(afterEventId, false, toEventId, true).values().stream()
+                        .limit(limit)
+                        .forEach(result::add);
+            }
+        }
+        return result.stream()
+                .sorted(Comparator.comparingLong(Event::eventId))
+                .limit(limit)
+                .toList();
+    }
+}
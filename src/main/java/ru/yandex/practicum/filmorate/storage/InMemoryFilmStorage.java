@@ -1,25 +1,108 @@
 package ru.yandex.practicum.filmorate.storage;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.EventOperation;
+import ru.yandex.practicum.filmorate.model.EventType;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmField;
+import ru.yandex.practicum.filmorate.model.IntSet;
+import ru.yandex.practicum.filmorate.model.SnapshotIntSet;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
 
+/**
+ * Потокобезопасное хранилище фильмов в памяти. Включается настройкой {@code filmorate.storage.type=memory}.
+ * Чтение не берёт блокировок: фильмы лежат в {@link ConcurrentSkipListMap} без лайков, и любое изменение
+ * заменяет сохранённый объект копией. Лайки фильма хранятся отдельно в {@link SnapshotIntSet} и меняются
+ * на месте, поэтому лайк не копирует всё множество; фильм отдаётся наружу вместе со снимком лайков.
+ */
 @Slf4j
+@Component
 @Qualifier("filmMemoryStorage")
+@ConditionalOnProperty(name = "filmorate.storage.type", havingValue = "memory")
 public class InMemoryFilmStorage implements FilmStorage {
-    private final Map<Integer, Film> films = new HashMap<>();
+    private static final Comparator<Film> BY_POPULARITY =
+            Comparator.comparingInt(Film::getLikeCount).reversed()
+                    .thenComparing(Film::getId);
+
+    private final ConcurrentNavigableMap<Integer, Film> films = new ConcurrentSkipListMap<>();
+    private final ConcurrentMap<Integer, SnapshotIntSet> likesByFilm = new ConcurrentHashMap<>();
+    private final AtomicInteger lastId = new AtomicInteger();
+    private final StripedLocks locks = new StripedLocks(64);
+    private final EventStorage eventStorage;
+    private final UserStorage userStorage;
+
+    public InMemoryFilmStorage(UserStorage userStorage) {
+        this(new InMemoryEventStorage(), userStorage);
+    }
+
+    @Autowired
+    public InMemoryFilmStorage(EventStorage eventStorage, UserStorage userStorage) {
+        this.eventStorage = eventStorage;
+        this.userStorage = userStorage;
+    }
 
     @Override
     public Collection<Film> getAllFilms() {
-        return films.values();
+        return withLikes(films.values());
+    }
+
+    // Top-K через кучу размера count: O(N log K) вместо сортировки всего каталога
+    @Override
+    public Collection<Film> getPopularFilms(int count, Integer genreId, Integer year) {
+        if (count <= 0) {
+            return List.of();
+        }
+        PriorityQueue<Film> top = new PriorityQueue<>(count + 1, BY_POPULARITY.reversed());
+        for (Film film : films.values()) {
+            if (!FilmFilters.matches(film, genreId, year)) {
+                continue;
+            }
+            top.offer(film);
+            if (top.size() > count) {
+                top.poll();
+            }
+        }
+        List<Film> popular = new ArrayList<>(top);
+        popular.sort(BY_POPULARITY);
+        return withLikes(popular);
+    }
+
+    @Override
+    public Collection<Film> getFilmsAfter(int afterId, int limit) {
+        return films.tailMap(afterId, false).values().stream()
+                .limit(limit)
+                .map(this::withLikes)
+                .toList();
+    }
+
+    // Фильмы уже в памяти, урезать их нечего: лишние поля отбросит маппер
+    @Override
+    public Collection<Film> getPopularFilms(int count, Integer genreId, Integer year, Set<FilmField> fields) {
+        return getPopularFilms(count, genreId, year);
+    }
+
+    @Override
+    public Collection<Film> getFilmsAfter(int afterId, int limit, Set<FilmField> fields) {
+        return getFilmsAfter(afterId, limit);
     }
 
     @Override
@@ -41,91 +124,198 @@ public class InMemoryFilmStorage implements FilmStorage {
             log.warn("Некорректная продолжительность фильма {}", film.getDuration());
             throw new ValidationException("Продолжительность фильма должна быть положительной");
         }
-        film.setId(getNextId());
-        films.put(film.getId(), film);
+        SnapshotIntSet likes = new SnapshotIntSet(film.getLikes());
+        film.setId(lastId.incrementAndGet());
+        film.setLikes(likes.snapshot());
+        film.setLikeCount(likes.size());
+        likesByFilm.put(film.getId(), likes);
+        films.put(film.getId(), withoutLikes(film, film.getVersion()));
         log.info("Фильм {} успешно добавлен", film.getName());
         return film;
     }
 
+    @Override
+    public List<Film> addFilms(List<Film> newFilms) {
+        // Пачка добавляется целиком или не добавляется вовсе, как в транзакции
+        List<Integer> addedIds = new ArrayList<>();
+        try {
+            for (Film film : newFilms) {
+                addedIds.add(addFilm(film).getId());
+            }
+        } catch (RuntimeException e) {
+            for (int id : addedIds) {
+                films.remove(id);
+                likesByFilm.remove(id);
+            }
+            throw e;
+        }
+        return newFilms;
+    }
+
     @Override
     public Film updateFilm(Film newFilm) {
         if (newFilm.getId() <= 0) {
             log.warn("Попытка обновить фильм с некорректным id {}", newFilm.getId());
             throw new ValidationException("Id фильма должен быть указан");
         }
-        Film oldFilm = films.get(newFilm.getId());
-        if (oldFilm == null) {
-            log.warn("Фильма с id {} нет в коллекции", newFilm.getId());
-            throw new NotFoundException("Фильм с таким id не найден");
-        }
-        if (newFilm.getName() != null && !newFilm.getName().isBlank()) {
-            oldFilm.setName(newFilm.getName());
-        } else if (newFilm.getName() != null) {
+        if (newFilm.getName() != null && newFilm.getName().isBlank()) {
             throw new ValidationException("Название фильма не может быть пустым");
         }
-        if (newFilm.getDescription() != null) {
-            if (newFilm.getDescription().length() > 200) {
-                throw new ValidationException("Максимальная длина описания фильма - 200 символов");
-            }
-            oldFilm.setDescription(newFilm.getDescription());
+        if (newFilm.getDescription() != null && newFilm.getDescription().length() > 200) {
+            throw new ValidationException("Максимальная длина описания фильма - 200 символов");
         }
-        if (newFilm.getReleaseDate() != null) {
-            if (newFilm.getReleaseDate().isBefore(LocalDate.of(1895, 12, 28))) {
-                throw new ValidationException("Фильм не должен быть выпущен раньше 28 декабря 1895 года");
-            }
-            oldFilm.setReleaseDate(newFilm.getReleaseDate());
+        if (newFilm.getReleaseDate() != null
+                && newFilm.getReleaseDate().isBefore(LocalDate.of(1895, 12, 28))) {
+            throw new ValidationException("Фильм не должен быть выпущен раньше 28 декабря 1895 года");
         }
-        if (newFilm.getDuration() > 0) {
-            oldFilm.setDuration(newFilm.getDuration());
-        } else {
+        if (newFilm.getDuration() <= 0) {
             throw new ValidationException("Продолжительность фильма всегда положительная!");
         }
-        log.info("Обновлён фильм {} с id = {}", oldFilm.getName(), oldFilm.getId());
-        return oldFilm;
+
+        Film[] updated = new Film[1];
+        locks.withLock(newFilm.getId(), () -> {
+            Film oldFilm = films.get(newFilm.getId());
+            if (oldFilm == null) {
+                log.warn("Фильма с id {} нет в коллекции", newFilm.getId());
+                throw new NotFoundException("Фильм с таким id не найден");
+            }
+
+            // Читатели без блокировок видят либо старую, либо новую версию фильма целиком
+            Film film = withoutLikes(oldFilm, oldFilm.getVersion() + 1);
+            if (newFilm.getName() != null) {
+                film.setName(newFilm.getName());
+            }
+            if (newFilm.getDescription() != null) {
+                film.setDescription(newFilm.getDescription());
+            }
+            if (newFilm.getReleaseDate() != null) {
+                film.setReleaseDate(newFilm.getReleaseDate());
+            }
+            film.setDuration(newFilm.getDuration());
+            if (newFilm.getMpa() != null) {
+                film.setMpa(newFilm.getMpa());
+            }
+            if (newFilm.getGenres() != null && !newFilm.getGenres().isEmpty()) {
+                film.setGenres(newFilm.getGenres());
+            }
+            films.put(film.getId(), film);
+            updated[0] = withLikes(film);
+        });
+        log.info("Обновлён фильм {} с id = {}", updated[0].getName(), updated[0].getId());
+        return updated[0];
     }
 
     @Override
     public Film getById(int idFilm) {
-        if (films.containsKey(idFilm)) {
-            return films.get(idFilm);
-        } else {
+        Film film = films.get(idFilm);
+        if (film == null) {
             throw new NotFoundException("Фильма с таким id нет");
         }
+        return withLikes(film);
     }
 
     @Override
-    public void addLike(int filmId, int userId) {
-        Film film = films.get(filmId);
-        if (film == null) {
-            throw new NotFoundException("Фильм с id = " + filmId + " не найден");
+    public List<Film> getFilmsByIds(Collection<Integer> ids) {
+        List<Film> result = new ArrayList<>(ids.size());
+        for (int id : ids) {
+            Film film = films.get(id);
+            if (film != null) {
+                result.add(withLikes(film));
+            }
         }
-        film.getLikes().add(userId);
-        log.info("Пользователь {} поставил лайк фильму {} (in-memory)", userId, filmId);
+        return result;
     }
 
     @Override
-    public void removeLike(int filmId, int userId) {
-        Film film = films.get(filmId);
-        if (film == null) {
-            throw new NotFoundException("Фильм с id = " + filmId + " не найден");
+    public long getVersion(int id) {
+        return getExisting(id).getVersion();
+    }
+
+    // Лайк несуществующего пользователя отклоняется, как и в FilmDbStorage
+    @Override
+    public boolean addLike(int filmId, int userId) {
+        userStorage.getVersion(userId);
+        boolean changed = changeLikes(filmId, likes -> likes.add(userId));
+        if (changed) {
+            eventStorage.addEvent(userId, EventType.LIKE, EventOperation.ADD, filmId);
         }
-        film.getLikes().remove(userId);
-        log.info("Пользователь {} убрал лайк фильму {} (in-memory)", userId, filmId);
+        log.debug("Пользователь {} поставил лайк фильму {} (in-memory)", userId, filmId);
+        return changed;
+    }
+
+    @Override
+    public boolean removeLike(int filmId, int userId) {
+        boolean changed = changeLikes(filmId, likes -> likes.remove(userId));
+        if (changed) {
+            eventStorage.addEvent(userId, EventType.LIKE, EventOperation.REMOVE, filmId);
+        }
+        log.debug("Пользователь {} убрал лайк фильму {} (in-memory)", userId, filmId);
+        return changed;
     }
 
     @Override
     public Set<Integer> getLikes(int filmId) {
+        getExisting(filmId);
+        return new IntSet(likesByFilm.get(filmId).snapshot());
+    }
+
+    // Возвращает, изменились ли лайки фильма. Множество меняется на месте, а фильм заменяется
+    // копией без лайков с новым счётчиком и версией
+    private boolean changeLikes(int filmId, Predicate<SnapshotIntSet> change) {
+        boolean[] changed = new boolean[1];
+        locks.withLock(filmId, () -> {
+            Film film = getExisting(filmId);
+            SnapshotIntSet likes = likesByFilm.get(filmId);
+            changed[0] = change.test(likes);
+            // Повторный лайк или снятие несуществующего не меняют фильм и его версию, как в БД
+            if (changed[0]) {
+                Film changedFilm = withoutLikes(film, film.getVersion() + 1);
+                changedFilm.setLikeCount(likes.size());
+                films.put(filmId, changedFilm);
+            }
+        });
+        return changed[0];
+    }
+
+    private Film getExisting(int filmId) {
         Film film = films.get(filmId);
         if (film == null) {
             throw new NotFoundException("Фильм с id = " + filmId + " не найден");
         }
-        return film.getLikes();
+        return film;
+    }
+
+    private List<Film> withLikes(Collection<Film> stored) {
+        List<Film> result = new ArrayList<>(stored.size());
+        for (Film film : stored) {
+            result.add(withLikes(film));
+        }
+        return result;
     }
 
-    private int getNextId() {
-        return films.keySet()
-                .stream()
-                .max(Integer::compareTo)
-                .orElse(0) + 1;
+    // Сохранённый фильм со снимком лайков. Снимок читается после фильма, поэтому лайки не старее его версии
+    private Film withLikes(Film stored) {
+        // Множества нет только у фильма, которого уже нет: пачку откатили после чтения
+        SnapshotIntSet likeSet = likesByFilm.get(stored.getId());
+        IntSet likes = likeSet != null ? likeSet.snapshot() : new IntSet();
+        Film film = withoutLikes(stored, stored.getVersion());
+        film.setLikes(likes);
+        film.setLikeCount(likes.size());
+        return film;
+    }
+
+    private Film withoutLikes(Film source, long version) {
+        Film film = new Film();
+        film.setId(source.getId());
+        film.setName(source.getName());
+        film.setDescription(source.getDescription());
+        film.setReleaseDate(source.getReleaseDate());
+        film.setDuration(source.getDuration());
+        film.setMpa(source.getMpa());
+        film.setGenres(source.getGenres());
+        film.setLikes(null);
+        film.setLikeCount(source.getLikeCount());
+        film.setVersion(version);
+        return film;
     }
 }
@@ -1,127 +1,366 @@
 package ru.yandex.practicum.filmorate.storage;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.EventOperation;
+import ru.yandex.practicum.filmorate.model.EventType;
+import ru.yandex.practicum.filmorate.model.FriendshipStatus;
+import ru.yandex.practicum.filmorate.model.IntSet;
+import ru.yandex.practicum.filmorate.model.SnapshotIntSet;
 import ru.yandex.practicum.filmorate.model.User;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
+/**
+ * Потокобезопасное хранилище пользователей в памяти. Включается настройкой {@code filmorate.storage.type=memory}.
+ * Уникальность email обеспечивается индексом email -> id. Любое изменение заменяет сохранённого
+ * пользователя копией, поэтому чтение идёт без блокировок; дружба меняется под блокировками обоих пользователей.
+ * Друзья хранятся отдельно в {@link SnapshotIntSet} и меняются на месте, без копирования всего множества.
+ * Состояния дружбы и их переходы те же, что у {@link UserDbStorage}: одна запись на пару пользователей.
+ */
 @Slf4j
+@Component
 @Qualifier("userMemoryStorage")
+@ConditionalOnProperty(name = "filmorate.storage.type", havingValue = "memory")
 public class InMemoryUserStorage implements UserStorage {
-    private final Map<Integer, User> users = new HashMap<>();
+    private final ConcurrentNavigableMap<Integer, User> users = new ConcurrentSkipListMap<>();
+    private final ConcurrentMap<Integer, SnapshotIntSet> friendsByUser = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Integer> idsByEmail = new ConcurrentHashMap<>();
+    private final AtomicInteger lastId = new AtomicInteger();
+    private final StripedLocks locks = new StripedLocks(64);
+    // Запись дружбы по паре пользователей и входящие заявки; меняются только под блокировками обоих
+    private final ConcurrentMap<Long, Friendship> friendships = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Integer, Set<Integer>> requestsByAddressee = new ConcurrentHashMap<>();
+    private final EventStorage eventStorage;
+
+    // userId отправил заявку, friendId её получил
+    private record Friendship(int userId, int friendId, FriendshipStatus status) {
+    }
+
+    public InMemoryUserStorage() {
+        this(new InMemoryEventStorage());
+    }
+
+    @Autowired
+    public InMemoryUserStorage(EventStorage eventStorage) {
+        this.eventStorage = eventStorage;
+    }
 
     @Override
     public Collection<User> getAllUsers() {
-        return users.values();
+        return withFriends(users.values());
+    }
+
+    @Override
+    public Collection<User> getUsersAfter(int afterId, int limit) {
+        return users.tailMap(afterId, false).values().stream()
+                .limit(limit)
+                .map(this::withFriends)
+                .toList();
     }
 
     @Override
     public User addUser(User user) {
-        validateEmailUnique(user.getEmail(), null);
+        validateEmail(user.getEmail());
         validateLogin(user.getLogin());
         validateBirthday(user.getBirthday());
         setNameIfBlank(user);
 
-        user.setId(getNextId());
-        users.put(user.getId(), user);
+        int id = lastId.incrementAndGet();
+        reserveEmail(user.getEmail(), id);
+        SnapshotIntSet friends = new SnapshotIntSet(user.getFriends());
+        user.setId(id);
+        user.setFriends(friends.snapshot());
+        friendsByUser.put(id, friends);
+        users.put(id, withoutFriends(user, user.getVersion()));
 
         log.info("Пользователь {} успешно добавлен", user.getName());
         return user;
     }
 
+    @Override
+    public List<User> addUsers(List<User> newUsers) {
+        // Пачка добавляется целиком или не добавляется вовсе, как в транзакции
+        List<User> added = new ArrayList<>();
+        try {
+            for (User user : newUsers) {
+                added.add(addUser(user));
+            }
+        } catch (RuntimeException e) {
+            for (User user : added) {
+                users.remove(user.getId());
+                friendsByUser.remove(user.getId());
+                idsByEmail.remove(emailKey(user.getEmail()), user.getId());
+            }
+            throw e;
+        }
+        return newUsers;
+    }
+
     @Override
     public User updateUser(User newUser) {
         if (newUser.getId() <= 0) {
             log.warn("Попытка обновить пользователя с некорректным id {}", newUser.getId());
             throw new ValidationException("Id не может быть меньше 1");
         }
-
-        User oldUser = users.get(newUser.getId());
-        if (oldUser == null) {
-            throw new NotFoundException("Пользователь с таким id не найден");
-        }
-
-        validateEmailUnique(newUser.getEmail(), newUser.getId());
+        validateEmail(newUser.getEmail());
         validateLogin(newUser.getLogin());
         validateBirthday(newUser.getBirthday());
 
-        oldUser.setEmail(newUser.getEmail());
-        oldUser.setLogin(newUser.getLogin());
-        oldUser.setName(newUser.getName());
-        oldUser.setBirthday(newUser.getBirthday());
+        User[] updated = new User[1];
+        locks.withLock(newUser.getId(), () -> {
+            User oldUser = users.get(newUser.getId());
+            if (oldUser == null) {
+                throw new NotFoundException("Пользователь с таким id не найден");
+            }
+
+            String oldKey = emailKey(oldUser.getEmail());
+            String newKey = emailKey(newUser.getEmail());
+            if (!oldKey.equals(newKey)) {
+                reserveEmail(newUser.getEmail(), oldUser.getId());
+                idsByEmail.remove(oldKey, oldUser.getId());
+            }
+
+            // Читатели без блокировок видят либо старую, либо новую версию пользователя целиком
+            User user = withoutFriends(newUser, oldUser.getVersion() + 1);
+            user.setId(oldUser.getId());
+            users.put(user.getId(), user);
+            updated[0] = withFriends(user);
+        });
 
-        log.info("Пользователь {} с id = {} обновлён", oldUser.getName(), oldUser.getId());
-        return oldUser;
+        log.info("Пользователь {} с id = {} обновлён", updated[0].getName(), updated[0].getId());
+        return updated[0];
     }
 
     @Override
     public User getById(int id) {
-        User user = users.get(id);
-        if (user == null) {
-            throw new NotFoundException("Пользователь с id = " + id + " не найден");
-        }
-        return user;
+        return withFriends(getExisting(id));
+    }
+
+    @Override
+    public long getVersion(int id) {
+        return getExisting(id).getVersion();
     }
 
     @Override
     public void addFriend(int userId, int friendId) {
-        User user = users.get(userId);
-        User friend = users.get(friendId);
+        validateFriendIds(userId, friendId, "Пользователь не может добавить сам себя в друзья");
+        locks.withLocks(userId, friendId, () -> {
+            getExisting(userId);
+            getExisting(friendId);
 
-        if (user == null || friend == null) {
-            throw new NotFoundException("Пользователь не найден");
-        }
+            Friendship current = friendships.get(pairKey(userId, friendId));
+            if (current == null || current.status() == FriendshipStatus.DECLINED) {
+                changeFriendship(userId, friendId, new Friendship(userId, friendId, FriendshipStatus.PENDING));
+            } else if (current.status() == FriendshipStatus.PENDING && current.userId() == friendId) {
+                changeFriendship(userId, friendId, new Friendship(friendId, userId, FriendshipStatus.CONFIRMED));
+            } else {
+                throw new ValidationException("Пользователь уже добавил этого пользователя в друзья");
+            }
+            changeFriends(userId, friends -> friends.add(friendId));
+            eventStorage.addEvent(userId, EventType.FRIEND, EventOperation.ADD, friendId);
+        });
+        log.debug("Пользователь {} отправил заявку в друзья {} (in-memory)", userId, friendId);
+    }
+
+    @Override
+    public void confirmFriend(int userId, int friendId) {
+        locks.withLocks(userId, friendId, () -> {
+            requirePendingRequest(userId, friendId);
+            changeFriendship(userId, friendId, new Friendship(friendId, userId, FriendshipStatus.CONFIRMED));
+            changeFriends(userId, friends -> friends.add(friendId));
+            eventStorage.addEvent(userId, EventType.FRIEND, EventOperation.ADD, friendId);
+        });
+        log.debug("Пользователь {} подтвердил дружбу с {} (in-memory)", userId, friendId);
+    }
 
-        user.getFriends().add(friendId);
-        friend.getFriends().add(userId);
-        log.info("Пользователь {} добавил в друзья {} (in-memory)", userId, friendId);
+    @Override
+    public void declineFriend(int userId, int friendId) {
+        locks.withLocks(userId, friendId, () -> {
+            requirePendingRequest(userId, friendId);
+            changeFriendship(userId, friendId, new Friendship(friendId, userId, FriendshipStatus.DECLINED));
+            // Отклонённая заявка пропадает из списка друзей её автора
+            changeFriends(friendId, friends -> friends.remove(userId));
+        });
+        log.debug("Пользователь {} отклонил заявку в друзья от {} (in-memory)", userId, friendId);
     }
 
     @Override
     public void removeFriend(int userId, int friendId) {
-        User user = users.get(userId);
-        User friend = users.get(friendId);
+        validateFriendIds(userId, friendId, "Пользователь не может удалить самого себя");
+        locks.withLocks(userId, friendId, () -> {
+            getExisting(userId);
+            getExisting(friendId);
+
+            Friendship current = friendships.get(pairKey(userId, friendId));
+            if (current == null) {
+                return;
+            }
+            if (current.status() == FriendshipStatus.CONFIRMED) {
+                changeFriendship(userId, friendId, new Friendship(friendId, userId, FriendshipStatus.PENDING));
+            } else if (current.status() == FriendshipStatus.PENDING && current.userId() == userId) {
+                changeFriendship(userId, friendId, null);
+            } else {
+                return;
+            }
+            changeFriends(userId, friends -> friends.remove(friendId));
+            eventStorage.addEvent(userId, EventType.FRIEND, EventOperation.REMOVE, friendId);
+        });
+        log.debug("Пользователь {} удалил из друзей {} (in-memory)", userId, friendId);
+    }
+
+    @Override
+    public List<User> getFriendRequests(int userId) {
+        Set<Integer> requesterIds = requestsByAddressee.get(userId);
+        return requesterIds != null ? toUsers(new IntSet(requesterIds)) : List.of();
+    }
+
+    private void validateFriendIds(int userId, int friendId, String selfMessage) {
+        if (userId <= 0 || friendId <= 0) {
+            throw new ValidationException("ID пользователя должен быть положительным");
+        }
+        if (userId == friendId) {
+            throw new ValidationException(selfMessage);
+        }
+    }
 
-        if (user == null || friend == null) {
-            throw new NotFoundException("Пользователь не найден");
+    // Заявка от friendId пользователю userId, ожидающая ответа
+    private void requirePendingRequest(int userId, int friendId) {
+        Friendship current = friendships.get(pairKey(userId, friendId));
+        if (current == null || current.status() != FriendshipStatus.PENDING || current.userId() != friendId) {
+            throw new NotFoundException("Заявка в друзья от пользователя " + friendId + " пользователю "
+                    + userId + " не найдена");
+        }
+    }
+
+    // next == null удаляет запись пары
+    private void changeFriendship(int userId, int friendId, Friendship next) {
+        long key = pairKey(userId, friendId);
+        Friendship previous = next != null ? friendships.put(key, next) : friendships.remove(key);
+        if (previous != null && previous.status() == FriendshipStatus.PENDING) {
+            requestsByAddressee.get(previous.friendId()).remove(previous.userId());
+        }
+        if (next != null && next.status() == FriendshipStatus.PENDING) {
+            requestsByAddressee.computeIfAbsent(next.friendId(), id -> ConcurrentHashMap.newKeySet())
+                    .add(next.userId());
         }
+    }
 
-        user.getFriends().remove(friendId);
-        friend.getFriends().remove(userId);
-        log.info("Пользователь {} удалил из друзей {} (in-memory)", userId, friendId);
+    private static long pairKey(int userId, int friendId) {
+        return ((long) Math.min(userId, friendId) << 32) | Math.max(userId, friendId);
     }
 
     @Override
     public Set<Integer> getFriends(int userId) {
+        return new IntSet(friendsOf(userId));
+    }
+
+    @Override
+    public List<User> getFriendUsers(int userId) {
+        return toUsers(friendsOf(userId));
+    }
+
+    @Override
+    public List<User> getCommonFriends(int userId, int otherId) {
+        IntSet common = new IntSet(friendsOf(userId));
+        common.retainAll(friendsOf(otherId));
+        return toUsers(common);
+    }
+
+    private IntSet friendsOf(int userId) {
+        getExisting(userId);
+        return friendsByUser.get(userId).snapshot();
+    }
+
+    private User getExisting(int userId) {
         User user = users.get(userId);
         if (user == null) {
             throw new NotFoundException("Пользователь с id = " + userId + " не найден");
         }
-        return user.getFriends();
+        return user;
     }
 
-    private void validateEmailUnique(String email, Integer currentUserId) {
-        if (email == null || email.isBlank()) {
-            throw new ValidationException("Email не может быть пустым");
+    private List<User> toUsers(Set<Integer> ids) {
+        List<User> result = new ArrayList<>(ids.size());
+        for (int id : ids) {
+            User user = users.get(id);
+            if (user != null) {
+                result.add(withFriends(user));
+            }
+        }
+        return result;
+    }
+
+    // Вызывается под блокировкой пользователя. Переход дружбы меняет представление пользователя,
+    // поэтому версия растёт, даже если его список друзей остался прежним - как в БД
+    private void changeFriends(int userId, Consumer<SnapshotIntSet> change) {
+        User user = getExisting(userId);
+        change.accept(friendsByUser.get(userId));
+        users.put(userId, withoutFriends(user, user.getVersion() + 1));
+    }
+
+    private List<User> withFriends(Collection<User> stored) {
+        List<User> result = new ArrayList<>(stored.size());
+        for (User user : stored) {
+            result.add(withFriends(user));
         }
+        return result;
+    }
 
-        boolean exists = users.values().stream()
-                .anyMatch(u -> u.getEmail().equalsIgnoreCase(email.trim())
-                        && (currentUserId == null || u.getId() != currentUserId));
+    // Сохранённый пользователь со снимком друзей; снимок читается после пользователя
+    private User withFriends(User stored) {
+        // Множества нет только у пользователя, которого уже нет: пачку откатили после чтения
+        SnapshotIntSet friends = friendsByUser.get(stored.getId());
+        User user = withoutFriends(stored, stored.getVersion());
+        user.setFriends(friends != null ? friends.snapshot() : new IntSet());
+        return user;
+    }
+
+    private User withoutFriends(User source, long version) {
+        User user = new User();
+        user.setId(source.getId());
+        user.setEmail(source.getEmail());
+        user.setLogin(source.getLogin());
+        user.setName(source.getName());
+        user.setBirthday(source.getBirthday());
+        user.setFriends(null);
+        user.setVersion(version);
+        return user;
+    }
 
-        if (exists) {
+    private void reserveEmail(String email, int userId) {
+        Integer ownerId = idsByEmail.putIfAbsent(emailKey(email), userId);
+        if (ownerId != null && ownerId != userId) {
             log.warn("Попытка использовать уже занятый email: {}", email);
             throw new ValidationException("Этот email уже используется");
         }
     }
 
+    private String emailKey(String email) {
+        return email.trim().toLowerCase();
+    }
+
+    private void validateEmail(String email) {
+        if (email == null || email.isBlank()) {
+            throw new ValidationException("Email не может быть пустым");
+        }
+    }
+
     private void validateLogin(String login) {
         if (login == null) return;
 
@@ -145,9 +384,4 @@ public class InMemoryUserStorage implements UserStorage {
             user.setName(user.getLogin());
         }
     }
-
-    private int getNextId() {
-        return users.keySet().stream().max(Integer::compareTo).orElse(0) + 1;
-    }
-
 }
@@ -0,0 +1,13 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import ru.yandex.practicum.filmorate.model.FilmLike;
+
+import java.util.List;
+
+/**
+ * Лайки из буфера {@link BufferedLikesFilmStorage}, записанные в БД одним пакетом: реально
+ * добавленные и удалённые строки. rejected - отброшенные лайки несуществующих фильмов или
+ * пользователей: в хранилище их нет, хотя до записи они были видны читателям буфера.
+ */
+public record LikesSavedEvent(List<FilmLike> added, List<FilmLike> removed, List<FilmLike> rejected) {
+}
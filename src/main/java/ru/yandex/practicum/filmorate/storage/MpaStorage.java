@@ -8,4 +8,7 @@ public interface MpaStorage {
     Collection<Mpa> getAllMpa();
 
     Mpa getMpaById(int id);
+
+    // Меняется при любом изменении справочника MPA
+    long getVersion();
 }
@@ -0,0 +1,112 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Кэш справочников MPA и жанров. Таблицы маленькие и почти не меняются, поэтому они целиком
+ * загружаются при старте в массивы, индексированные по id. После изменения справочников
+ * в БД нужно вызвать {@link #invalidate()}, и следующее обращение перечитает их.
+ * Версия справочников - хэш их содержимого, поэтому между перезапусками с теми же данными она не меняется.
+ */
+@Slf4j
+@Component
+public class ReferenceDataCache {
+    private final JdbcTemplate jdbcTemplate;
+    private volatile Snapshot snapshot;
+
+    public ReferenceDataCache(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    private record Snapshot(Mpa[] mpaById, Genre[] genreById, List<Mpa> allMpa, List<Genre> allGenres, long version) {
+    }
+
+    @EventListener(ContextRefreshedEvent.class)
+    public void preload() {
+        current();
+    }
+
+    public void invalidate() {
+        snapshot = null;
+        log.info("Кэш справочников MPA и жанров сброшен");
+    }
+
+    public Mpa getMpa(int id) {
+        Mpa[] mpaById = current().mpaById();
+        return id > 0 && id < mpaById.length ? mpaById[id] : null;
+    }
+
+    public Genre getGenre(int id) {
+        Genre[] genreById = current().genreById();
+        return id > 0 && id < genreById.length ? genreById[id] : null;
+    }
+
+    public long getVersion() {
+        return current().version();
+    }
+
+    public Collection<Mpa> getAllMpa() {
+        return current().allMpa();
+    }
+
+    public Collection<Genre> getAllGenres() {
+        return current().allGenres();
+    }
+
+    private Snapshot current() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            synchronized (this) {
+                current = snapshot;
+                if (current == null) {
+                    current = load();
+                    snapshot = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    private Snapshot load() {
+        List<Mpa> allMpa = jdbcTemplate.query("SELECT mpa_id, code, name FROM mpa_ratings ORDER BY mpa_id",
+                (rs, rowNum) -> {
+                    Mpa mpa = new Mpa();
+                    mpa.setId(rs.getInt("mpa_id"));
+                    mpa.setCode(rs.getString("code"));
+                    mpa.setName(rs.getString("name"));
+                    return mpa;
+                });
+        List<Genre> allGenres = jdbcTemplate.query("SELECT genre_id, name FROM genres ORDER BY genre_id",
+                (rs, rowNum) -> {
+                    Genre genre = new Genre();
+                    genre.setId(rs.getInt("genre_id"));
+                    genre.setName(rs.getString("name"));
+                    return genre;
+                });
+
+        int maxMpaId = allMpa.isEmpty() ? 0 : allMpa.get(allMpa.size() - 1).getId();
+        Mpa[] mpaById = new Mpa[maxMpaId + 1];
+        for (Mpa mpa : allMpa) {
+            mpaById[mpa.getId()] = mpa;
+        }
+
+        int maxGenreId = allGenres.isEmpty() ? 0 : allGenres.get(allGenres.size() - 1).getId();
+        Genre[] genreById = new Genre[maxGenreId + 1];
+        for (Genre genre : allGenres) {
+            genreById[genre.getId()] = genre;
+        }
+
+        log.info("Загружены справочники: {} рейтингов MPA, {} жанров", allMpa.size(), allGenres.size());
+        long version = 31L * allMpa.hashCode() + allGenres.hashCode();
+        return new Snapshot(mpaById, genreById, List.copyOf(allMpa), List.copyOf(allGenres), version);
+    }
+}
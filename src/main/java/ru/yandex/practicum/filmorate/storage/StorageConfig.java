@@ -0,0 +1,94 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import java.time.Duration;
+
+/**
+ * Собирает хранилища, которые получают сервисы: базовое хранилище (БД или память),
+ * при необходимости отложенная запись лайков и кэш фильмов и пользователей по id.
+ * Кэш ставится только перед БД - хранилища в памяти в нём не нуждаются.
+ */
+@Configuration
+public class StorageConfig {
+    private final boolean cacheEnabled;
+    private final long cacheMaximumSize;
+    private final Duration cacheTtl;
+
+    public StorageConfig(@Value("${filmorate.cache.enabled:true}") boolean cacheEnabled,
+                         @Value("${filmorate.cache.maximum-size:10000}") long cacheMaximumSize,
+                         @Value("${filmorate.cache.ttl:60s}") Duration cacheTtl) {
+        this.cacheEnabled = cacheEnabled;
+        this.cacheMaximumSize = cacheMaximumSize;
+        this.cacheTtl = cacheTtl;
+    }
+
+    @Bean
+    @ConditionalOnExpression("${filmorate.likes.write-behind.enabled:false} and '${filmorate.storage.type:db}' == 'db'")
+    public BufferedLikesFilmStorage bufferedLikesFilmStorage(
+            FilmDbStorage filmDbStorage,
+            UserStorage userStorage,
+            ApplicationEventPublisher eventPublisher,
+            @Value("${filmorate.likes.write-behind.flush-interval-ms:200}") long flushIntervalMillis,
+            @Value("${filmorate.likes.write-behind.max-pending:1000}") int maxPending) {
+        return new BufferedLikesFilmStorage(filmDbStorage, userStorage, eventPublisher, flushIntervalMillis, maxPending);
+    }
+
+    @Bean
+    @Primary
+    public FilmStorage filmStorage(ObjectProvider<FilmDbStorage> filmDbStorage,
+                                   ObjectProvider<BufferedLikesFilmStorage> bufferedLikesFilmStorage,
+                                   ObjectProvider<InMemoryFilmStorage> inMemoryFilmStorage,
+                                   ObjectProvider<MeterRegistry> meterRegistry) {
+        FilmDbStorage dbStorage = filmDbStorage.getIfAvailable();
+        if (dbStorage == null) {
+            return inMemoryFilmStorage.getObject();
+        }
+        FilmStorage storage = bufferedLikesFilmStorage.getIfAvailable();
+        if (storage == null) {
+            storage = dbStorage;
+        }
+        if (!cacheEnabled) {
+            return storage;
+        }
+        return new CachingFilmStorage(storage, buildCache("films", meterRegistry.getIfAvailable()));
+    }
+
+    @Bean
+    @Primary
+    public UserStorage userStorage(ObjectProvider<UserDbStorage> userDbStorage,
+                                   ObjectProvider<InMemoryUserStorage> inMemoryUserStorage,
+                                   ObjectProvider<MeterRegistry> meterRegistry) {
+        UserDbStorage dbStorage = userDbStorage.getIfAvailable();
+        if (dbStorage == null) {
+            return inMemoryUserStorage.getObject();
+        }
+        if (!cacheEnabled) {
+            return dbStorage;
+        }
+        return new CachingUserStorage(dbStorage, buildCache("users", meterRegistry.getIfAvailable()));
+    }
+
+    // Попадания, промахи и вытеснения видны в метриках cache.gets, cache.evictions с тегом cache=<name>
+    private <T> Cache<Integer, T> buildCache(String name, MeterRegistry registry) {
+        Cache<Integer, T> cache = Caffeine.newBuilder()
+                .maximumSize(cacheMaximumSize)
+                .expireAfterWrite(cacheTtl)
+                .recordStats()
+                .build();
+        if (registry != null) {
+            CaffeineCacheMetrics.monitor(registry, cache, name);
+        }
+        return cache;
+    }
+}
@@ -0,0 +1,62 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Набор блокировок, выбираемых по id сущности. Изменения разных сущностей почти не конкурируют
+ * за одну блокировку, а операции над парой сущностей берут две блокировки в фиксированном порядке.
+ * Блокировки - ReentrantLock, а не мониторы: их можно держать на время запроса к БД,
+ * не занимая поток-носитель виртуального потока.
+ */
+public class StripedLocks {
+    private final Lock[] locks;
+
+    public StripedLocks(int stripes) {
+        locks = new Lock[stripes];
+        for (int i = 0; i < stripes; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    public <T> T withLock(int id, Supplier<T> action) {
+        Lock lock = locks[stripe(id)];
+        lock.lock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void withLock(int id, Runnable action) {
+        Lock lock = locks[stripe(id)];
+        lock.lock();
+        try {
+            action.run();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void withLocks(int firstId, int secondId, Runnable action) {
+        Lock first = locks[Math.min(stripe(firstId), stripe(secondId))];
+        Lock second = locks[Math.max(stripe(firstId), stripe(secondId))];
+        first.lock();
+        try {
+            second.lock();
+            try {
+                action.run();
+            } finally {
+                second.unlock();
+            }
+        } finally {
+            first.unlock();
+        }
+    }
+
+    private int stripe(int id) {
+        return Math.floorMod(id, locks.length);
+    }
+}
@@ -2,36 +2,45 @@ package ru.yandex.practicum.filmorate.storage;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.EventOperation;
+import ru.yandex.practicum.filmorate.model.EventType;
+import ru.yandex.practicum.filmorate.model.IntSet;
 import ru.yandex.practicum.filmorate.model.User;
-import ru.yandex.practicum.filmorate.validation.UserUniqueValidator;
 import ru.yandex.practicum.filmorate.validation.UserValidator;
 
 import java.sql.Date;
 import java.sql.PreparedStatement;
+import java.sql.SQLException;
 import java.util.*;
 
 @Qualifier("userDbStorage")
+@ConditionalOnProperty(name = "filmorate.storage.type", havingValue = "db", matchIfMissing = true)
 @Repository
 public class UserDbStorage implements UserStorage {
+    private static final String EMAIL_INDEX = "UQ_USERS_EMAIL_LOWER";
+
     private final JdbcTemplate jdbcTemplate;
     private final UserValidator userValidator;
-    private final UserUniqueValidator userUniqueValidator;
+    private final EventStorage eventStorage;
 
     @Autowired
-    public UserDbStorage(JdbcTemplate jdbcTemplate,
-                         UserValidator userValidator,
-                         UserUniqueValidator userUniqueValidator) {
+    public UserDbStorage(JdbcTemplate jdbcTemplate, UserValidator userValidator, EventStorage eventStorage) {
         this.jdbcTemplate = jdbcTemplate;
         this.userValidator = userValidator;
-        this.userUniqueValidator = userUniqueValidator;
+        this.eventStorage = eventStorage;
     }
 
     private final RowMapper<User> userRowMapper = (rs, rowNum) -> {
@@ -44,6 +53,7 @@ public class UserDbStorage implements UserStorage {
         if (birthday != null) {
             user.setBirthday(birthday.toLocalDate());
         }
+        user.setVersion(rs.getLong("version"));
         return user;
     };
 
@@ -51,20 +61,29 @@ public class UserDbStorage implements UserStorage {
     public Collection<User> getAllUsers() {
         String sql = "SELECT * FROM users ORDER BY user_id";
         List<User> users = jdbcTemplate.query(sql, userRowMapper);
+        loadFriends(users, "");
+        return users;
+    }
 
-        for (User user : users) {
-            Set<Integer> friends = getFriends(user.getId());
-            user.setFriends(friends);
+    @Override
+    public Collection<User> getUsersAfter(int afterId, int limit) {
+        String sql = "SELECT * FROM users WHERE user_id > ? ORDER BY user_id LIMIT ?";
+        List<User> users = jdbcTemplate.query(sql, userRowMapper, afterId, limit);
+        if (users.isEmpty()) {
+            return users;
         }
 
+        String placeholders = String.join(",", Collections.nCopies(users.size(), "?"));
+        Object[] ids = users.stream().map(User::getId).toArray();
+        loadFriends(users, "WHERE user_id IN (" + placeholders + ") ", ids);
         return users;
     }
 
     @Override
     public User addUser(User user) {
         userValidator.validateUser(user);
-        userUniqueValidator.validateEmailUnique(user.getEmail(), null);
 
+        // Занятый email без учёта регистра отклоняет уникальный индекс uq_users_email_lower
         String sql = "INSERT INTO users (email, login, name, birthday) VALUES (?, ?, ?, ?)";
 
         KeyHolder keyHolder = new GeneratedKeyHolder();
@@ -78,46 +97,94 @@ public class UserDbStorage implements UserStorage {
                 ps.setDate(4, user.getBirthday() != null ? Date.valueOf(user.getBirthday()) : null);
                 return ps;
             }, keyHolder);
-
-            user.setId(Objects.requireNonNull(keyHolder.getKey()).intValue());
-            return user;
-        } catch (Exception e) {
-            if (e.getMessage().toLowerCase().contains("unique") ||
-                    e.getMessage().toLowerCase().contains("duplicate")) {
-                throw new ValidationException("Email уже используется");
-            }
-            throw e;
+        } catch (DuplicateKeyException e) {
+            throw duplicateUser(e);
         }
+
+        user.setId(Objects.requireNonNull(keyHolder.getKey()).intValue());
+        return user;
     }
 
+    // Пачка пользователей вставляется одним JDBC-батчем; проверка полей выполняется вызывающей стороной.
+    // Email без учёта регистра проверяет уникальный индекс uq_users_email_lower: строка с занятым email
+    // откатывает пачку, и загрузка повторяет её по одной строке
     @Override
-    public User updateUser(User user) {
-        userValidator.validateForUpdate(user);
+    @Transactional
+    public List<User> addUsers(List<User> users) {
+        if (users.isEmpty()) {
+            return users;
+        }
 
-        User existingUser = getById(user.getId());
-        if (existingUser == null) {
-            throw new NotFoundException("Пользователь с id = " + user.getId() + " не найден");
+        String sql = "INSERT INTO users (email, login, name, birthday) VALUES (?, ?, ?, ?)";
+
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+
+        try {
+            jdbcTemplate.batchUpdate(
+                    connection -> connection.prepareStatement(sql, new String[]{"user_id"}),
+                    new BatchPreparedStatementSetter() {
+                        @Override
+                        public void setValues(PreparedStatement ps, int i) throws SQLException {
+                            User user = users.get(i);
+                            ps.setString(1, user.getEmail());
+                            ps.setString(2, user.getLogin());
+                            ps.setString(3, user.getName());
+                            ps.setDate(4, user.getBirthday() != null ? Date.valueOf(user.getBirthday()) : null);
+                        }
+
+                        @Override
+                        public int getBatchSize() {
+                            return users.size();
+                        }
+                    },
+                    keyHolder);
+        } catch (DuplicateKeyException e) {
+            throw duplicateUser(e);
         }
 
-        if (!existingUser.getEmail().equalsIgnoreCase(user.getEmail())) {
-            userUniqueValidator.validateEmailUnique(user.getEmail(), user.getId());
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        for (int i = 0; i < users.size(); i++) {
+            users.get(i).setId(((Number) keys.get(i).values().iterator().next()).intValue());
         }
 
-        String sql = "UPDATE users SET email = ?, login = ?, name = ?, birthday = ? " +
-                "WHERE user_id = ?";
+        return users;
+    }
+
+    @Override
+    public User updateUser(User user) {
+        userValidator.validateForUpdate(user);
 
-        int rowsUpdated = jdbcTemplate.update(sql,
-                user.getEmail(),
-                user.getLogin(),
-                user.getName(),
-                user.getBirthday() != null ? Date.valueOf(user.getBirthday()) : null,
-                user.getId());
+        // Одним запросом: обновление и новая версия с друзьями. Занятый email отклоняет уникальный индекс,
+        // поэтому пустой результат значит, что пользователя нет
+        String sql = "SELECT u.version, " +
+                "ARRAY(SELECT friend_id FROM friend_links WHERE user_id = u.user_id ORDER BY friend_id) AS friend_ids " +
+                "FROM FINAL TABLE (UPDATE users SET email = ?, login = ?, name = ?, birthday = ?, version = version + 1 " +
+                "WHERE user_id = ?) u";
 
-        if (rowsUpdated == 0) {
-            throw new NotFoundException("Пользователь с id = " + user.getId() + " не найден");
+        List<User> updated;
+        try {
+            updated = jdbcTemplate.query(sql, (rs, rowNum) -> {
+                user.setVersion(rs.getLong("version"));
+                IntSet friends = new IntSet();
+                for (Object friendId : (Object[]) rs.getArray("friend_ids").getArray()) {
+                    friends.add(((Number) friendId).intValue());
+                }
+                user.setFriends(friends);
+                return user;
+            },
+                    user.getEmail(),
+                    user.getLogin(),
+                    user.getName(),
+                    user.getBirthday() != null ? Date.valueOf(user.getBirthday()) : null,
+                    user.getId());
+        } catch (DuplicateKeyException e) {
+            throw duplicateUser(e);
         }
 
-        return getById(user.getId());
+        if (updated.isEmpty()) {
+            throw new NotFoundException("Пользователь с id = " + user.getId() + " не найден");
+        }
+        return user;
     }
 
     @Override
@@ -131,9 +198,7 @@ public class UserDbStorage implements UserStorage {
             User user = jdbcTemplate.queryForObject(sql, userRowMapper, id);
 
             if (user != null) {
-                String friendsSql = "SELECT friend_id FROM friendships WHERE user_id = ?";
-                List<Integer> friends = jdbcTemplate.queryForList(friendsSql, Integer.class, id);
-                user.setFriends(new HashSet<>(friends));
+                user.setFriends(getFriends(id));
             }
 
             return user;
@@ -143,6 +208,22 @@ public class UserDbStorage implements UserStorage {
     }
 
     @Override
+    public long getVersion(int id) {
+        List<Long> versions = jdbcTemplate.queryForList(
+                "SELECT version FROM users WHERE user_id = ?", Long.class, id);
+        if (versions.isEmpty()) {
+            throw new NotFoundException("Пользователь с id = " + id + " не найден");
+        }
+        return versions.get(0);
+    }
+
+    /**
+     * Заявка в друзья. Встречная заявка подтверждает дружбу, отклонённую заявку можно отправить заново.
+     * Переход - один MERGE по паре пользователей: уникальный индекс пары не даёт появиться второй строке,
+     * поэтому одновременные встречные заявки тоже сходятся в подтверждённую дружбу.
+     */
+    @Override
+    @Transactional
     public void addFriend(int userId, int friendId) {
         if (userId <= 0 || friendId <= 0) {
             throw new ValidationException("ID пользователя должен быть положительным");
@@ -152,22 +233,76 @@ public class UserDbStorage implements UserStorage {
             throw new ValidationException("Пользователь не может добавить сам себя в друзья");
         }
 
+        int changed;
+        try {
+            changed = mergeFriendRequest(userId, friendId);
+        } catch (DuplicateKeyException e) {
+            // Строку пары параллельно вставила встречная заявка: теперь она найдётся
+            changed = retryFriendRequest(userId, friendId);
+        } catch (DataIntegrityViolationException e) {
+            // Оба пользователя есть, значит запрос столкнулся с параллельным изменением пары
+            requireExists(userId);
+            requireExists(friendId);
+            changed = retryFriendRequest(userId, friendId);
+        }
+        if (changed == 0) {
+            throw new ValidationException("Пользователь уже добавил этого пользователя в друзья");
+        }
+        bumpVersion(userId);
+        eventStorage.addEvent(userId, EventType.FRIEND, EventOperation.ADD, friendId);
+    }
 
-        getById(userId);
-        getById(friendId);
+    private int retryFriendRequest(int userId, int friendId) {
+        try {
+            return mergeFriendRequest(userId, friendId);
+        } catch (DataIntegrityViolationException e) {
+            throw new ValidationException("Заявку в друзья не удалось сохранить из-за параллельного изменения, "
+                    + "повторите запрос");
+        }
+    }
 
-        String checkSql = "SELECT COUNT(*) FROM friendships WHERE user_id = ? AND friend_id = ?";
-        Integer count = jdbcTemplate.queryForObject(checkSql, Integer.class, userId, friendId);
+    private int mergeFriendRequest(int userId, int friendId) {
+        String sql = "MERGE INTO friendships f " +
+                "USING (VALUES (CAST(? AS INTEGER), CAST(? AS INTEGER))) AS r(user_id, friend_id) " +
+                "ON f.low_id = LEAST(r.user_id, r.friend_id) AND f.high_id = GREATEST(r.user_id, r.friend_id) " +
+                "WHEN MATCHED AND f.status = 'PENDING' AND f.user_id = r.friend_id THEN " +
+                "UPDATE SET status = 'CONFIRMED' " +
+                "WHEN MATCHED AND f.status = 'DECLINED' THEN " +
+                "UPDATE SET user_id = r.user_id, friend_id = r.friend_id, status = 'PENDING' " +
+                "WHEN NOT MATCHED THEN INSERT (user_id, friend_id, status) VALUES (r.user_id, r.friend_id, 'PENDING')";
+        return jdbcTemplate.update(sql, userId, friendId);
+    }
 
-        if (count > 0) {
-            throw new ValidationException("Пользователь уже добавил этого пользователя в друзья");
-        }
+    @Override
+    @Transactional
+    public void confirmFriend(int userId, int friendId) {
+        answerFriendRequest(userId, friendId, "CONFIRMED");
+        bumpVersion(userId);
+        eventStorage.addEvent(userId, EventType.FRIEND, EventOperation.ADD, friendId);
+    }
 
-        String sql = "INSERT INTO friendships (user_id, friend_id) VALUES (?, ?)";
-        jdbcTemplate.update(sql, userId, friendId);
+    // Отклонённая заявка пропадает из списка друзей её автора, поэтому меняется его версия
+    @Override
+    @Transactional
+    public void declineFriend(int userId, int friendId) {
+        answerFriendRequest(userId, friendId, "DECLINED");
+        bumpVersion(friendId);
     }
 
+    private void answerFriendRequest(int userId, int friendId, String status) {
+        String sql = "UPDATE friendships SET status = ? WHERE user_id = ? AND friend_id = ? AND status = 'PENDING'";
+        if (jdbcTemplate.update(sql, status, friendId, userId) == 0) {
+            throw new NotFoundException("Заявка в друзья от пользователя " + friendId + " пользователю "
+                    + userId + " не найдена");
+        }
+    }
+
+    /**
+     * Убирает пользователя из списка друзей. Подтверждённая дружба становится заявкой второго
+     * пользователя, собственная заявка отзывается; остальные состояния не меняются.
+     */
     @Override
+    @Transactional
     public void removeFriend(int userId, int friendId) {
         if (userId <= 0 || friendId <= 0) {
             throw new ValidationException("ID пользователя должен быть положительным");
@@ -177,11 +312,29 @@ public class UserDbStorage implements UserStorage {
             throw new ValidationException("Пользователь не может удалить самого себя");
         }
 
-        getById(userId);
-        getById(friendId);
+        String sql = "MERGE INTO friendships f " +
+                "USING (VALUES (CAST(? AS INTEGER), CAST(? AS INTEGER))) AS r(user_id, friend_id) " +
+                "ON f.low_id = LEAST(r.user_id, r.friend_id) AND f.high_id = GREATEST(r.user_id, r.friend_id) " +
+                "WHEN MATCHED AND f.status = 'CONFIRMED' THEN " +
+                "UPDATE SET user_id = r.friend_id, friend_id = r.user_id, status = 'PENDING' " +
+                "WHEN MATCHED AND f.status = 'PENDING' AND f.user_id = r.user_id THEN DELETE";
+        if (jdbcTemplate.update(sql, userId, friendId) > 0) {
+            bumpVersion(userId);
+            eventStorage.addEvent(userId, EventType.FRIEND, EventOperation.REMOVE, friendId);
+            return;
+        }
+        // Удалять было нечего: ошибка, только если кого-то из пользователей нет
+        requireExists(userId);
+        requireExists(friendId);
+    }
+
+    private void requireExists(int userId) {
+        getVersion(userId);
+    }
 
-        String sql = "DELETE FROM friendships WHERE user_id = ? AND friend_id = ?";
-        int rowsDeleted = jdbcTemplate.update(sql, userId, friendId);
+    // Список друзей входит в представление пользователя, поэтому его изменение тоже меняет версию
+    private void bumpVersion(int userId) {
+        jdbcTemplate.update("UPDATE users SET version = version + 1 WHERE user_id = ?", userId);
     }
 
     @Override
@@ -190,8 +343,72 @@ public class UserDbStorage implements UserStorage {
             throw new ValidationException("ID пользователя должен быть положительным");
         }
 
-        String sql = "SELECT friend_id FROM friendships WHERE user_id = ?";
-        List<Integer> friends = jdbcTemplate.queryForList(sql, Integer.class, userId);
-        return new HashSet<>(friends);
+        String sql = "SELECT friend_id FROM friend_links WHERE user_id = ? ORDER BY friend_id";
+        IntSet friends = new IntSet();
+        jdbcTemplate.query(sql, rs -> {
+            friends.add(rs.getInt("friend_id"));
+        }, userId);
+        return friends;
+    }
+
+    @Override
+    public List<User> getFriendUsers(int userId) {
+        String sql = "SELECT u.* FROM friend_links f " +
+                "JOIN users u ON u.user_id = f.friend_id " +
+                "WHERE f.user_id = ? " +
+                "ORDER BY u.user_id";
+        List<User> friends = jdbcTemplate.query(sql, userRowMapper, userId);
+        loadFriends(friends,
+                "WHERE user_id IN (SELECT friend_id FROM friend_links WHERE user_id = ?) ", userId);
+        return friends;
+    }
+
+    // Входящие заявки берутся из индекса (friend_id, status, user_id) без чтения строк friendships
+    @Override
+    public List<User> getFriendRequests(int userId) {
+        String requesterIdsSql = "SELECT user_id FROM friendships WHERE friend_id = ? AND status = 'PENDING'";
+        String sql = "SELECT * FROM users WHERE user_id IN (" + requesterIdsSql + ") ORDER BY user_id";
+        List<User> requesters = jdbcTemplate.query(sql, userRowMapper, userId);
+        loadFriends(requesters, "WHERE user_id IN (" + requesterIdsSql + ") ", userId);
+        return requesters;
+    }
+
+    @Override
+    public List<User> getCommonFriends(int userId, int otherId) {
+        String commonIdsSql = "SELECT f1.friend_id FROM friend_links f1 " +
+                "JOIN friend_links f2 ON f2.friend_id = f1.friend_id " +
+                "WHERE f1.user_id = ? AND f2.user_id = ?";
+        String sql = "SELECT * FROM users WHERE user_id IN (" + commonIdsSql + ") ORDER BY user_id";
+        List<User> commonFriends = jdbcTemplate.query(sql, userRowMapper, userId, otherId);
+        loadFriends(commonFriends, "WHERE user_id IN (" + commonIdsSql + ") ", userId, otherId);
+        return commonFriends;
+    }
+
+    // Друзья для списка пользователей загружаются одним запросом; filter отбирает строки friend_links
+    // теми же условиями, что и сам список, чтобы не передавать в запрос все id
+    private void loadFriends(List<User> users, String filter, Object... args) {
+        if (users.isEmpty()) {
+            return;
+        }
+        Map<Integer, User> usersById = new HashMap<>();
+        for (User user : users) {
+            usersById.put(user.getId(), user);
+        }
+        String sql = "SELECT user_id, friend_id FROM friend_links " + filter + "ORDER BY user_id, friend_id";
+        jdbcTemplate.query(sql, rs -> {
+            User user = usersById.get(rs.getInt("user_id"));
+            if (user != null) {
+                user.getFriends().add(rs.getInt("friend_id"));
+            }
+        }, args);
+    }
+
+    // Какое ограничение нарушено, видно только по имени индекса в сообщении драйвера
+    private static ValidationException duplicateUser(DuplicateKeyException e) {
+        String message = String.valueOf(e.getMessage()).toUpperCase(Locale.ROOT);
+        if (message.contains(EMAIL_INDEX)) {
+            return new ValidationException("Этот email уже используется");
+        }
+        return new ValidationException("Email или логин уже используется");
     }
-}
\ No newline at end of file
+}
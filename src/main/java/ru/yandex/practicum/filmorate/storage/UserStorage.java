@@ -3,20 +3,44 @@ package ru.yandex.practicum.filmorate.storage;
 import ru.yandex.practicum.filmorate.model.User;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.Set;
 
 public interface UserStorage {
     Collection<User> getAllUsers();
 
+    Collection<User> getUsersAfter(int afterId, int limit);
+
     User addUser(User user);
 
+    List<User> addUsers(List<User> users);
+
     User updateUser(User user);
 
     User getById(int id);
 
+    /**
+     * Версия пользователя, которая меняется вместе с его представлением. Дешевле, чем {@link #getById(int)}.
+     */
+    long getVersion(int id);
+
+    // Заявка в друзья; встречная заявка подтверждает дружбу
     void addFriend(int userId, int friendId);
 
+    // userId принимает или отклоняет заявку от friendId
+    void confirmFriend(int userId, int friendId);
+
+    void declineFriend(int userId, int friendId);
+
     void removeFriend(int userId, int friendId);
 
+    // Список друзей пользователя: его заявки, кроме отклонённых, и подтверждённая дружба
     Set<Integer> getFriends(int userId);
+
+    List<User> getFriendUsers(int userId);
+
+    // Пользователи, чьи заявки ждут ответа userId
+    List<User> getFriendRequests(int userId);
+
+    List<User> getCommonFriends(int userId, int otherId);
 }
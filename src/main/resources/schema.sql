@@ -14,7 +14,9 @@ CREATE TABLE IF NOT EXISTS users (
     email VARCHAR(80) NOT NULL UNIQUE,
     login VARCHAR(30) NOT NULL UNIQUE,
     name VARCHAR(50),
-    birthday DATE NOT NULL
+    birthday DATE NOT NULL,
+    version BIGINT NOT NULL DEFAULT 0,
+    email_lower VARCHAR(80) GENERATED ALWAYS AS (LOWER(TRIM(email)))
 );
 
 CREATE TABLE IF NOT EXISTS films (
@@ -23,7 +25,9 @@ CREATE TABLE IF NOT EXISTS films (
     description VARCHAR(200),
     release_date DATE NOT NULL,
     duration INTEGER NOT NULL CHECK (duration > 0),
-    mpa_id INTEGER REFERENCES mpa_ratings(mpa_id) ON DELETE RESTRICT
+    mpa_id INTEGER REFERENCES mpa_ratings(mpa_id) ON DELETE RESTRICT,
+    like_count INTEGER NOT NULL DEFAULT 0,
+    version BIGINT NOT NULL DEFAULT 0
 );
 
 CREATE TABLE IF NOT EXISTS film_genres (
@@ -39,18 +43,83 @@ CREATE TABLE IF NOT EXISTS likes (
     CONSTRAINT likes_pk PRIMARY KEY (user_id, film_id)
 );
 
+-- Базы без счётчика лайков: столбец добавляется пустым, поэтому пересчёт по likes идёт один раз -
+-- только для строк, у которых счётчика ещё нет
+ALTER TABLE films ADD COLUMN IF NOT EXISTS like_count INTEGER;
+UPDATE films f SET like_count = (SELECT COUNT(*) FROM likes l WHERE l.film_id = f.film_id) WHERE like_count IS NULL;
+ALTER TABLE films ALTER COLUMN like_count SET DEFAULT 0;
+ALTER TABLE films ALTER COLUMN like_count SET NOT NULL;
+
+-- Версии для ETag на базах, созданных до их появления
+ALTER TABLE users ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE films ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
+
+-- Email уникален без учёта регистра: вставка проверяется индексом, а не просмотром всех пользователей
+ALTER TABLE users ADD COLUMN IF NOT EXISTS email_lower VARCHAR(80) GENERATED ALWAYS AS (LOWER(TRIM(email)));
+CREATE UNIQUE INDEX IF NOT EXISTS uq_users_email_lower ON users(email_lower);
+
+-- Одна строка на пару пользователей: user_id отправил заявку, friend_id её получил
 CREATE TABLE IF NOT EXISTS friendships (
     user_id INTEGER NOT NULL REFERENCES users(user_id) ON DELETE CASCADE,
     friend_id INTEGER NOT NULL REFERENCES users(user_id) ON DELETE CASCADE,
     status VARCHAR(20) DEFAULT 'PENDING',
+    low_id INTEGER GENERATED ALWAYS AS (LEAST(user_id, friend_id)),
+    high_id INTEGER GENERATED ALWAYS AS (GREATEST(user_id, friend_id)),
     CONSTRAINT friendships_pk PRIMARY KEY (user_id, friend_id),
     CHECK (user_id != friend_id)
 );
 
+-- Базы с прежней односторонней дружбой: встречные строки пары сливаются в одну подтверждённую.
+-- Одиночные индексы покрываются новыми и удаляются до ALTER: после него их забирают внешние ключи
+DROP INDEX IF EXISTS idx_friendships_user;
+DROP INDEX IF EXISTS idx_friendships_friend;
+ALTER TABLE friendships ADD COLUMN IF NOT EXISTS low_id INTEGER GENERATED ALWAYS AS (LEAST(user_id, friend_id));
+ALTER TABLE friendships ADD COLUMN IF NOT EXISTS high_id INTEGER GENERATED ALWAYS AS (GREATEST(user_id, friend_id));
+UPDATE friendships f SET status = 'CONFIRMED'
+WHERE EXISTS (SELECT 1 FROM friendships r WHERE r.user_id = f.friend_id AND r.friend_id = f.user_id);
+DELETE FROM friendships f
+WHERE f.user_id > f.friend_id
+  AND EXISTS (SELECT 1 FROM friendships r WHERE r.user_id = f.friend_id AND r.friend_id = f.user_id);
+CREATE UNIQUE INDEX IF NOT EXISTS uq_friendships_pair ON friendships(low_id, high_id);
+
+-- Кто у пользователя в списке друзей: его заявки, кроме отклонённых, и подтверждённая дружба с обеих сторон
+CREATE OR REPLACE VIEW friend_links AS
+SELECT user_id, friend_id FROM friendships WHERE status IN ('PENDING', 'CONFIRMED')
+UNION ALL
+SELECT friend_id, user_id FROM friendships WHERE status = 'CONFIRMED';
+
+-- Журнал событий для ленты: строки только добавляются
+CREATE TABLE IF NOT EXISTS events (
+    event_id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    user_id INTEGER NOT NULL REFERENCES users(user_id) ON DELETE CASCADE,
+    event_type VARCHAR(10) NOT NULL,
+    operation VARCHAR(10) NOT NULL,
+    entity_id INTEGER NOT NULL,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL
+);
+
+-- События пишутся сюда в транзакции изменения, а в events их переносит один поток в порядке фиксации:
+-- id из events выдаются уже после коммита, поэтому курсор ленты не перескакивает незафиксированные события
+CREATE TABLE IF NOT EXISTS event_outbox (
+    outbox_id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    user_id INTEGER NOT NULL REFERENCES users(user_id) ON DELETE CASCADE,
+    event_type VARCHAR(10) NOT NULL,
+    operation VARCHAR(10) NOT NULL,
+    entity_id INTEGER NOT NULL,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL
+);
+
 CREATE INDEX IF NOT EXISTS idx_films_mpa ON films(mpa_id);
+CREATE INDEX IF NOT EXISTS idx_films_like_count ON films(like_count DESC, film_id);
 CREATE INDEX IF NOT EXISTS idx_film_genres_film ON film_genres(film_id);
-CREATE INDEX IF NOT EXISTS idx_film_genres_genre ON film_genres(genre_id);
+-- Поиск фильмов жанра сразу отдаёт film_id из индекса; одиночный индекс по genre_id им покрывается
+DROP INDEX IF EXISTS idx_film_genres_genre;
+CREATE INDEX IF NOT EXISTS idx_film_genres_genre_film ON film_genres(genre_id, film_id);
+CREATE INDEX IF NOT EXISTS idx_films_release_date ON films(release_date);
 CREATE INDEX IF NOT EXISTS idx_likes_user ON likes(user_id);
 CREATE INDEX IF NOT EXISTS idx_likes_film ON likes(film_id);
-CREATE INDEX IF NOT EXISTS idx_friendships_user ON friendships(user_id);
-CREATE INDEX IF NOT EXISTS idx_friendships_friend ON friendships(friend_id);
+-- Исходящие и входящие заявки по статусу читаются только из индексов
+CREATE INDEX IF NOT EXISTS idx_friendships_outgoing ON friendships(user_id, status, friend_id);
+CREATE INDEX IF NOT EXISTS idx_friendships_incoming ON friendships(friend_id, status, user_id);
+-- Лента читается по курсору event_id отдельно для каждого пользователя
+CREATE INDEX IF NOT EXISTS idx_events_user ON events(user_id, event_id);
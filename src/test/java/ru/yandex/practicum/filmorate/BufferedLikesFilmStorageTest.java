@@ -0,0 +1,177 @@
+package ru.yandex.practicum.filmorate;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.boot.test.autoconfigure.json.AutoConfigureJson;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.LikesIndex;
+import ru.yandex.practicum.filmorate.storage.BufferedLikesFilmStorage;
+import ru.yandex.practicum.filmorate.storage.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.LikesSavedEvent;
+import ru.yandex.practicum.filmorate.storage.UserDbStorage;
+
+import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@AutoConfigureJson
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@ComponentScan(basePackages = "ru.yandex.practicum.filmorate")
+class BufferedLikesFilmStorageTest {
+    private final FilmDbStorage filmDbStorage;
+    private final UserDbStorage userStorage;
+    private final JdbcTemplate jdbcTemplate;
+
+    private BufferedLikesFilmStorage storage;
+    private int filmId;
+    private int firstUserId;
+    private int secondUserId;
+
+    @BeforeEach
+    void setup() {
+        // Таймер не срабатывает во время теста, записью управляем вручную
+        storage = new BufferedLikesFilmStorage(filmDbStorage, userStorage, 3_600_000, 1000);
+        filmId = addFilm("Buffered");
+        firstUserId = addUser("buffered1");
+        secondUserId = addUser("buffered2");
+    }
+
+    @AfterEach
+    void tearDown() {
+        storage.close();
+    }
+
+    @Test
+    void readsSeeBufferedLikesBeforeFlush() {
+        storage.addLike(filmId, firstUserId);
+        storage.addLike(filmId, secondUserId);
+
+        assertThat(storedLikeCount()).isZero();
+        assertThat(storage.getById(filmId).getLikeCount()).isEqualTo(2);
+        assertThat(storage.getLikes(filmId)).containsExactly(firstUserId, secondUserId);
+        assertThat(storage.getPopularFilms(1, null, null)).extracting(Film::getId).containsExactly(filmId);
+
+        storage.flush();
+
+        assertThat(storedLikeCount()).isEqualTo(2);
+        assertThat(filmDbStorage.getLikes(filmId)).containsExactly(firstUserId, secondUserId);
+    }
+
+    // Индекс лайков получает только записанные лайки: лайк пользователя, удалённого до записи, отбрасывается
+    @Test
+    void likesIndexFollowsFlushedLikes() {
+        AtomicReference<LikesIndex> likesIndex = new AtomicReference<>();
+        BufferedLikesFilmStorage indexed = new BufferedLikesFilmStorage(filmDbStorage, userStorage,
+                event -> likesIndex.get().onLikesSaved((LikesSavedEvent) event), 3_600_000, 1000);
+        likesIndex.set(new LikesIndex(indexed));
+        try {
+            indexed.addLike(filmId, firstUserId);
+            indexed.addLike(filmId, secondUserId);
+            // Индекс строится через буфер и видит ещё не записанные лайки
+            assertThat(likesIndex.get().getLikers(filmId)).containsExactlyInAnyOrder(firstUserId, secondUserId);
+
+            deleteUser(secondUserId);
+            indexed.flush();
+
+            assertThat(likesIndex.get().getLikers(filmId)).containsExactly(firstUserId);
+            assertThat(likesIndex.get().getLikedFilms(secondUserId)).isEmpty();
+        } finally {
+            indexed.close();
+        }
+    }
+
+    @Test
+    void coalescesLikeAndUnlikeOfSamePair() {
+        storage.addLike(filmId, firstUserId);
+        storage.flush();
+
+        storage.removeLike(filmId, firstUserId);
+        storage.addLike(filmId, firstUserId);
+        storage.removeLike(filmId, firstUserId);
+        storage.addLike(filmId, secondUserId);
+        storage.addLike(filmId, secondUserId);
+
+        assertThat(storage.getById(filmId).getLikes()).containsExactly(secondUserId);
+        storage.flush();
+        assertThat(filmDbStorage.getLikes(filmId)).containsExactly(secondUserId);
+        assertThat(storedLikeCount()).isEqualTo(1);
+    }
+
+    // Лайк несуществующего фильма или пользователя отклоняется сразу и в буфер не попадает
+    @Test
+    void rejectsLikesOfUnknownFilmsAndUsers() {
+        assertThrows(NotFoundException.class, () -> storage.addLike(999_999, firstUserId));
+        assertThrows(NotFoundException.class, () -> storage.addLike(filmId, 999_999));
+
+        assertThrows(NotFoundException.class, () -> storage.getVersion(999_999));
+        assertThat(storage.getById(filmId).getLikeCount()).isZero();
+        assertThat(storage.getVersion(filmId)).isEqualTo(filmDbStorage.getVersion(filmId));
+    }
+
+    // Фильм, удалённый после лайка, даёт 404 и с незаписанными лайками, и после записи
+    @Test
+    void deletedFilmHasNoVersionWithPendingLikes() {
+        int deletedId = addFilm("Deleted");
+        storage.addLike(deletedId, firstUserId);
+        jdbcTemplate.update("DELETE FROM films WHERE film_id = ?", deletedId);
+
+        assertThrows(NotFoundException.class, () -> storage.getVersion(deletedId));
+        storage.flush();
+        assertThrows(NotFoundException.class, () -> storage.getVersion(deletedId));
+    }
+
+    @Test
+    void dropsLikesOfDeletedUsersAndFlushesOnClose() {
+        storage.addLike(filmId, secondUserId);
+        storage.addLike(filmId, firstUserId);
+        deleteUser(secondUserId);
+
+        storage.close();
+
+        assertThat(filmDbStorage.getLikes(filmId)).containsExactly(firstUserId);
+        assertThat(storedLikeCount()).isEqualTo(1);
+    }
+
+    private void deleteUser(int userId) {
+        jdbcTemplate.update("DELETE FROM users WHERE user_id = ?", userId);
+    }
+
+    private int storedLikeCount() {
+        return jdbcTemplate.queryForObject("SELECT like_count FROM films WHERE film_id = ?", Integer.class, filmId);
+    }
+
+    private int addFilm(String name) {
+        Film film = new Film();
+        film.setName(name);
+        film.setDescription("Description");
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setDuration(100);
+        Mpa mpa = new Mpa();
+        mpa.setId(1);
+        film.setMpa(mpa);
+        return filmDbStorage.addFilm(film).getId();
+    }
+
+    private int addUser(String login) {
+        User user = new User();
+        user.setEmail(login + "@mail.com");
+        user.setLogin(login);
+        user.setName(login);
+        user.setBirthday(LocalDate.of(1990, 1, 1));
+        return userStorage.addUser(user).getId();
+    }
+}
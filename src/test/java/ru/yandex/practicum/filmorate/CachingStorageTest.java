@@ -0,0 +1,184 @@
+package ru.yandex.practicum.filmorate;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.boot.test.autoconfigure.json.AutoConfigureJson;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmLike;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.BufferedLikesFilmStorage;
+import ru.yandex.practicum.filmorate.storage.CachingFilmStorage;
+import ru.yandex.practicum.filmorate.storage.CachingUserStorage;
+import ru.yandex.practicum.filmorate.storage.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.LikesSavedEvent;
+import ru.yandex.practicum.filmorate.storage.UserDbStorage;
+import ru.yandex.practicum.filmorate.storage.UserStorage;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@AutoConfigureJson
+@Import(StatementCounter.class)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@ComponentScan(basePackages = "ru.yandex.practicum.filmorate")
+class CachingStorageTest {
+    private final FilmDbStorage filmDbStorage;
+    private final UserDbStorage userDbStorage;
+    private final FilmStorage filmStorage;
+    private final UserStorage userStorage;
+    private final StatementCounter statementCounter;
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Test
+    public void servicesGetCachingStoragesByDefault() {
+        assertThat(filmStorage).isInstanceOf(CachingFilmStorage.class);
+        assertThat(userStorage).isInstanceOf(CachingUserStorage.class);
+    }
+
+    @Test
+    public void filmIsReadOnceAndInvalidatedByLikesAndUpdate() {
+        Cache<Integer, Film> cache = Caffeine.newBuilder().maximumSize(100).recordStats().build();
+        CachingFilmStorage storage = new CachingFilmStorage(filmDbStorage, cache);
+        int userId = addUser("liker").getId();
+        int filmId = addFilm("Cached");
+
+        storage.getById(filmId);
+        statementCounter.reset();
+        storage.getById(filmId);
+        assertThat(statementCounter.count()).isZero();
+
+        storage.addLike(filmId, userId);
+        assertThat(storage.getById(filmId).getLikes()).containsExactly(userId);
+
+        Film update = storage.getById(filmId);
+        Film changed = new Film();
+        changed.setId(filmId);
+        changed.setName("Renamed");
+        changed.setDescription(update.getDescription());
+        changed.setReleaseDate(update.getReleaseDate());
+        changed.setDuration(update.getDuration());
+        changed.setMpa(update.getMpa());
+        storage.updateFilm(changed);
+        assertThat(storage.getById(filmId).getName()).isEqualTo("Renamed");
+
+        storage.removeLike(filmId, userId);
+        assertThat(storage.getById(filmId).getLikes()).isEmpty();
+        assertThat(cache.stats().hitCount()).isEqualTo(2);
+        assertThat(cache.stats().missCount()).isEqualTo(4);
+    }
+
+    // Пакетное чтение берёт из кэша только готовые фильмы, а догруженные в кэш не кладёт:
+    // иначе оно могло бы вернуть в кэш фильм, сброшенный параллельным изменением
+    @Test
+    public void filmsByIdsUseCacheHitsWithoutFillingIt() {
+        Cache<Integer, Film> cache = Caffeine.newBuilder().maximumSize(100).build();
+        CachingFilmStorage storage = new CachingFilmStorage(filmDbStorage, cache);
+        int cachedId = addFilm("Cached by id");
+        int loadedId = addFilm("Loaded in bulk");
+        storage.getById(cachedId);
+
+        assertThat(storage.getFilmsByIds(List.of(loadedId, cachedId)))
+                .extracting(Film::getId).containsExactly(loadedId, cachedId);
+        assertThat(cache.getIfPresent(loadedId)).isNull();
+
+        statementCounter.reset();
+        assertThat(storage.getFilmsByIds(List.of(cachedId))).extracting(Film::getId).containsExactly(cachedId);
+        assertThat(statementCounter.count()).isZero();
+    }
+
+    // Отброшенный при записи пакета лайк не остаётся в кэше вместе с временной версией
+    @Test
+    public void flushedLikesInvalidateFilmsCachedFromBuffer() {
+        Cache<Integer, Film> cache = Caffeine.newBuilder().maximumSize(100).build();
+        AtomicReference<CachingFilmStorage> storage = new AtomicReference<>();
+        BufferedLikesFilmStorage buffered = new BufferedLikesFilmStorage(filmDbStorage, userDbStorage,
+                event -> storage.get().onLikesSaved((LikesSavedEvent) event), 3_600_000, 1000);
+        storage.set(new CachingFilmStorage(buffered, cache));
+        int filmId = addFilm("Phantom");
+        int userId = addUser("phantomLiker").getId();
+        try {
+            storage.get().addLike(filmId, userId);
+            Film overlaid = storage.get().getById(filmId);
+            assertThat(overlaid.getLikeCount()).isEqualTo(1);
+
+            // Пользователь удалён до записи пакета: его лайк отбрасывается
+            jdbcTemplate.update("DELETE FROM users WHERE user_id = ?", userId);
+            buffered.flush();
+
+            Film stored = storage.get().getById(filmId);
+            assertThat(stored.getLikeCount()).isZero();
+            assertThat(stored.getLikes()).isEmpty();
+            assertThat(stored.getVersion()).isNotEqualTo(overlaid.getVersion());
+        } finally {
+            buffered.close();
+        }
+    }
+
+    @Test
+    public void cachingStorageListensToSavedLikes() {
+        int filmId = addFilm("Listened");
+        filmStorage.getById(filmId);
+        jdbcTemplate.update("UPDATE films SET name = 'Changed' WHERE film_id = ?", filmId);
+
+        eventPublisher.publishEvent(new LikesSavedEvent(List.of(), List.of(), List.of(new FilmLike(filmId, 1))));
+
+        assertThat(filmStorage.getById(filmId).getName()).isEqualTo("Changed");
+    }
+
+    @Test
+    public void friendshipChangeInvalidatesBothUsers() {
+        Cache<Integer, User> cache = Caffeine.newBuilder().maximumSize(100).recordStats().build();
+        CachingUserStorage storage = new CachingUserStorage(userDbStorage, cache);
+        int userId = addUser("first").getId();
+        int friendId = addUser("second").getId();
+        storage.getById(userId);
+        storage.getById(friendId);
+
+        storage.addFriend(userId, friendId);
+
+        assertThat(cache.getIfPresent(userId)).isNull();
+        assertThat(cache.getIfPresent(friendId)).isNull();
+        assertThat(storage.getById(userId).getFriends()).containsExactly(friendId);
+
+        storage.removeFriend(userId, friendId);
+        assertThat(storage.getById(userId).getFriends()).isEmpty();
+    }
+
+    private int addFilm(String name) {
+        Film film = new Film();
+        film.setName(name);
+        film.setDescription("Description");
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setDuration(100);
+        Mpa mpa = new Mpa();
+        mpa.setId(1);
+        film.setMpa(mpa);
+        return filmDbStorage.addFilm(film).getId();
+    }
+
+    private User addUser(String login) {
+        User user = new User();
+        user.setEmail(login + "@mail.com");
+        user.setLogin(login);
+        user.setName(login);
+        user.setBirthday(LocalDate.of(1990, 1, 1));
+        return userDbStorage.addUser(user);
+    }
+}
@@ -0,0 +1,68 @@
+package ru.yandex.practicum.filmorate;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.metrics.CallMetricsAspect;
+import ru.yandex.practicum.filmorate.metrics.SqlStatistics;
+import ru.yandex.practicum.filmorate.storage.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.InMemoryUserStorage;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CallMetricsAspectTest {
+    private SimpleMeterRegistry registry;
+    private FilmStorage storage;
+
+    @BeforeEach
+    void setup() {
+        registry = new SimpleMeterRegistry();
+        StaticListableBeanFactory beanFactory = new StaticListableBeanFactory(Map.of("registry", registry));
+        CallMetricsAspect aspect = new CallMetricsAspect(
+                new SqlStatistics(beanFactory.getBeanProvider(MeterRegistry.class)),
+                beanFactory.getBeanProvider(MeterRegistry.class));
+
+        AspectJProxyFactory proxyFactory = new AspectJProxyFactory(new InMemoryFilmStorage(new InMemoryUserStorage()));
+        proxyFactory.addAspect(aspect);
+        storage = proxyFactory.getProxy();
+    }
+
+    @Test
+    void recordsLatencyPerStorageMethod() {
+        storage.getAllFilms();
+        storage.getAllFilms();
+
+        assertThat(registry.get("filmorate.storage.calls")
+                .tag("class", "InMemoryFilmStorage")
+                .tag("method", "getAllFilms")
+                .tag("exception", "none")
+                .timer().count()).isEqualTo(2);
+        assertThat(registry.get("filmorate.storage.sql.statements")
+                .tag("method", "getAllFilms")
+                .summary().totalAmount()).isZero();
+        assertThat(registry.get("filmorate.storage.sql.rows")
+                .tag("method", "getAllFilms")
+                .summary().count()).isEqualTo(2);
+    }
+
+    @Test
+    void countsErrorsByExceptionType() {
+        assertThrows(NotFoundException.class, () -> storage.getById(42));
+
+        assertThat(registry.get("filmorate.storage.errors")
+                .tag("method", "getById")
+                .tag("exception", "NotFoundException")
+                .counter().count()).isEqualTo(1);
+        assertThat(registry.get("filmorate.storage.calls")
+                .tag("exception", "NotFoundException")
+                .timer().count()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,74 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import ru.yandex.practicum.filmorate.controller.ConcurrencyLimitFilter;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ConcurrencyLimitFilterTest {
+
+    @Test
+    void rejectsRequestsThatWaitTooLongForPermit() throws Exception {
+        ConcurrencyLimitFilter filter = new ConcurrencyLimitFilter(1, 50,
+                Jackson2ObjectMapperBuilder.json().build());
+        CountDownLatch inside = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Thread busy = Thread.ofVirtual().start(() -> {
+            try {
+                filter.doFilter(new MockHttpServletRequest("GET", "/films"), new MockHttpServletResponse(),
+                        (request, response) -> {
+                            inside.countDown();
+                            try {
+                                release.await();
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                            }
+                        });
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        assertThat(inside.await(5, TimeUnit.SECONDS)).isTrue();
+
+        MockHttpServletResponse rejected = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("GET", "/films"), rejected, (request, response) -> { });
+        MockHttpServletResponse health = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("GET", "/actuator/health"), health, (request, response) -> { });
+
+        release.countDown();
+        busy.join();
+        MockHttpServletResponse accepted = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("GET", "/films"), accepted, (request, response) -> { });
+
+        assertThat(rejected.getStatus()).isEqualTo(503);
+        assertThat(rejected.getContentAsString()).contains("Сервер перегружен");
+        assertThat(health.getStatus()).isEqualTo(200);
+        assertThat(accepted.getStatus()).isEqualTo(200);
+    }
+
+    // Потоковый ответ пишется после возврата из фильтра, поэтому разрешение держится до конца async-обработки
+    @Test
+    void asyncRequestHoldsPermitUntilCompleted() throws Exception {
+        ConcurrencyLimitFilter filter = new ConcurrencyLimitFilter(1, 50,
+                Jackson2ObjectMapperBuilder.json().build());
+        MockHttpServletRequest streaming = new MockHttpServletRequest("GET", "/films/stream");
+        streaming.setAsyncSupported(true);
+        filter.doFilter(streaming, new MockHttpServletResponse(), (request, response) -> request.startAsync());
+
+        MockHttpServletResponse whileStreaming = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("GET", "/films"), whileStreaming, (request, response) -> { });
+        streaming.getAsyncContext().complete();
+        MockHttpServletResponse afterStreaming = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("GET", "/films"), afterStreaming, (request, response) -> { });
+
+        assertThat(whileStreaming.getStatus()).isEqualTo(503);
+        assertThat(afterStreaming.getStatus()).isEqualTo(200);
+    }
+}
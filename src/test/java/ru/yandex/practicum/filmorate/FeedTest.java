@@ -0,0 +1,249 @@
+package ru.yandex.practicum.filmorate;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.boot.test.autoconfigure.json.AutoConfigureJson;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.Event;
+import ru.yandex.practicum.filmorate.model.EventOperation;
+import ru.yandex.practicum.filmorate.model.EventType;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FeedService;
+import ru.yandex.practicum.filmorate.storage.BufferedLikesFilmStorage;
+import ru.yandex.practicum.filmorate.storage.EventDbStorage;
+import ru.yandex.practicum.filmorate.storage.EventStorage;
+import ru.yandex.practicum.filmorate.storage.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.InMemoryEventStorage;
+import ru.yandex.practicum.filmorate.storage.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.InMemoryUserStorage;
+import ru.yandex.practicum.filmorate.storage.UserDbStorage;
+import ru.yandex.practicum.filmorate.storage.UserStorage;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@AutoConfigureJson
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@ComponentScan(basePackages = "ru.yandex.practicum.filmorate")
+class FeedTest {
+    private final FilmDbStorage filmDbStorage;
+    private final UserDbStorage userDbStorage;
+    private final FilmStorage filmStorage;
+    private final UserStorage userStorage;
+    private final FeedService feedService;
+    private final JdbcTemplate jdbcTemplate;
+    private final EventDbStorage eventStorage;
+    private final PlatformTransactionManager transactionManager;
+
+    @Test
+    public void dbFeedContainsOwnAndFriendEvents() {
+        // Через основные хранилища: лента берёт друзей из кэша пользователей
+        checkFeed(filmStorage, userStorage, eventStorage, feedService);
+    }
+
+    @Test
+    public void inMemoryFeedContainsTheSameEvents() {
+        InMemoryEventStorage eventStorage = new InMemoryEventStorage();
+        InMemoryUserStorage userStorage = new InMemoryUserStorage(eventStorage);
+        checkFeed(new InMemoryFilmStorage(eventStorage, userStorage), userStorage, eventStorage,
+                new FeedService(userStorage, eventStorage));
+    }
+
+    @Test
+    public void bufferedLikesAreLoggedWhenFlushed() {
+        int filmId = addFilm(filmDbStorage, "Buffered feed");
+        int userId = addUser(userDbStorage, "bufferedFeed");
+        BufferedLikesFilmStorage storage = new BufferedLikesFilmStorage(filmDbStorage, userDbStorage, 3_600_000, 1000);
+        try {
+            storage.addLike(filmId, userId);
+            storage.removeLike(filmId, userId);
+            storage.addLike(filmId, userId);
+            assertThat(feedService.getFeed(userId, null, null)).isEmpty();
+
+            storage.flush();
+        } finally {
+            storage.close();
+        }
+        // Чтение ленты само события не переносит: до переноса они лежат в event_outbox
+        assertThat(feedService.getFeed(userId, null, null)).isEmpty();
+
+        eventStorage.flush();
+        assertThat(feedService.getFeed(userId, null, null))
+                .extracting(Event::eventType, Event::operation, Event::entityId)
+                .containsExactly(tuple(EventType.LIKE, EventOperation.ADD, filmId));
+    }
+
+    @Test
+    public void feedIsReadFromUserIndex() {
+        String plan = jdbcTemplate.queryForObject(
+                "EXPLAIN SELECT * FROM (" +
+                        "(SELECT * FROM events WHERE user_id = 1 AND event_id > 10 ORDER BY event_id LIMIT 5) UNION ALL " +
+                        "(SELECT * FROM events WHERE user_id = 2 AND event_id > 10 ORDER BY event_id LIMIT 5)" +
+                        ") AS e ORDER BY event_id LIMIT 5",
+                String.class);
+
+        assertThat(plan).contains("IDX_EVENTS_USER");
+    }
+
+    // Событие из транзакции, которая началась раньше, а зафиксирована позже, не теряется за курсором
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void eventCommittedLaterIsNotSkippedByCursor() throws Exception {
+        int slow = addUser(userDbStorage, "outboxSlow");
+        int fast = addUser(userDbStorage, "outboxFast");
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        CountDownLatch written = new CountDownLatch(1);
+        CountDownLatch commit = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> slowWrite = executor.submit(() -> transaction.executeWithoutResult(status -> {
+                eventStorage.addEvent(slow, EventType.FRIEND, EventOperation.ADD, fast);
+                written.countDown();
+                await(commit);
+            }));
+            await(written);
+            transaction.executeWithoutResult(status ->
+                    eventStorage.addEvent(fast, EventType.FRIEND, EventOperation.ADD, slow));
+
+            eventStorage.flush();
+            List<Event> first = eventStorage.getEvents(List.of(slow, fast), 0, 100);
+            assertThat(first).extracting(Event::userId).containsExactly(fast);
+
+            commit.countDown();
+            slowWrite.get();
+            eventStorage.flush();
+            assertThat(eventStorage.getEvents(List.of(slow, fast), first.get(0).eventId(), 100))
+                    .extracting(Event::userId).containsExactly(slow);
+        } finally {
+            commit.countDown();
+            executor.shutdown();
+            jdbcTemplate.update("DELETE FROM users WHERE user_id IN (?, ?)", slow, fast);
+        }
+    }
+
+    // Фоновый поток будит только фиксация транзакции с событием, и он сам переносит его в журнал
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void backgroundAppenderMovesCommittedEvents() throws Exception {
+        int userId = addUser(userDbStorage, "outboxBackground");
+        EventDbStorage background = new EventDbStorage(jdbcTemplate, transactionManager, 10, true);
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        try {
+            transaction.executeWithoutResult(status -> {
+                background.addEvent(userId, EventType.LIKE, EventOperation.ADD, 1);
+                status.setRollbackOnly();
+            });
+            transaction.executeWithoutResult(status ->
+                    background.addEvent(userId, EventType.LIKE, EventOperation.REMOVE, 1));
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (background.getEvents(List.of(userId), 0, 10).isEmpty() && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertThat(background.getEvents(List.of(userId), 0, 10))
+                    .extracting(Event::operation).containsExactly(EventOperation.REMOVE);
+        } finally {
+            background.close();
+            jdbcTemplate.update("DELETE FROM users WHERE user_id = ?", userId);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertThat(latch.await(10, TimeUnit.SECONDS)).isTrue();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void checkFeed(FilmStorage filmStorage, UserStorage userStorage, EventStorage events, FeedService feed) {
+        int film = addFilm(filmStorage, "Feed film");
+        int anna = addUser(userStorage, "feedAnna");
+        int boris = addUser(userStorage, "feedBoris");
+        int clara = addUser(userStorage, "feedClara");
+
+        filmStorage.addLike(film, anna);
+        // Повторный лайк и снятие несуществующего ничего не меняют и в ленту не попадают
+        filmStorage.addLike(film, anna);
+        filmStorage.removeLike(film, boris);
+        userStorage.addFriend(boris, anna);
+        filmStorage.addLike(film, clara);
+        filmStorage.removeLike(film, anna);
+        events.flush();
+
+        // Заявка Бориса видна в его ленте вместе с событиями Анны, но Анна Бориса пока не видит
+        assertThat(feed.getFeed(boris, null, null))
+                .extracting(Event::userId, Event::eventType, Event::operation, Event::entityId)
+                .containsExactly(
+                        tuple(anna, EventType.LIKE, EventOperation.ADD, film),
+                        tuple(boris, EventType.FRIEND, EventOperation.ADD, anna),
+                        tuple(anna, EventType.LIKE, EventOperation.REMOVE, film));
+        assertThat(feed.getFeed(anna, null, null)).extracting(Event::userId).containsOnly(anna);
+
+        userStorage.confirmFriend(anna, boris);
+        userStorage.removeFriend(boris, anna);
+        events.flush();
+        assertThat(feed.getFeed(anna, null, null))
+                .extracting(Event::userId, Event::eventType, Event::operation)
+                .endsWith(
+                        tuple(anna, EventType.FRIEND, EventOperation.ADD),
+                        tuple(boris, EventType.FRIEND, EventOperation.REMOVE));
+
+        // Страницы по курсору идут без пропусков и повторов
+        List<Event> all = feed.getFeed(anna, null, null);
+        List<Event> first = feed.getFeed(anna, null, 2);
+        List<Event> rest = feed.getFeed(anna, first.get(first.size() - 1).eventId(), 100);
+        assertThat(first).hasSize(2);
+        assertThat(first).containsExactlyElementsOf(all.subList(0, 2));
+        assertThat(rest).containsExactlyElementsOf(all.subList(2, all.size()));
+
+        assertThrows(NotFoundException.class, () -> feed.getFeed(999_999, null, null));
+        assertThrows(ValidationException.class, () -> feed.getFeed(anna, null, 0));
+    }
+
+    private int addFilm(FilmStorage storage, String name) {
+        Film film = new Film();
+        film.setName(name);
+        film.setDescription("Description");
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setDuration(100);
+        Mpa mpa = new Mpa();
+        mpa.setId(1);
+        film.setMpa(mpa);
+        return storage.addFilm(film).getId();
+    }
+
+    private int addUser(UserStorage storage, String login) {
+        User user = new User();
+        user.setEmail(login + "@mail.com");
+        user.setLogin(login);
+        user.setName(login);
+        user.setBirthday(LocalDate.of(1990, 1, 1));
+        return storage.addUser(user).getId();
+    }
+}
@@ -0,0 +1,343 @@
+package ru.yandex.practicum.filmorate;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.boot.test.autoconfigure.json.AutoConfigureJson;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.dto.FilmDto;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.metrics.SqlStatistics;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.storage.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.UserDbStorage;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@AutoConfigureJson
+@Import(StatementCounter.class)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@ComponentScan(basePackages = "ru.yandex.practicum.filmorate")
+class FilmDbStorageQueryCountTest {
+    private final FilmDbStorage filmStorage;
+    private final UserDbStorage userStorage;
+    private final StatementCounter statementCounter;
+    private final JdbcTemplate jdbcTemplate;
+    private final SqlStatistics sqlStatistics;
+    private final FilmService filmService;
+
+    @Test
+    public void getAllFilmsQueryCountDoesNotGrowWithCatalogSize() {
+        User user = new User();
+        user.setEmail("counter@mail.com");
+        user.setLogin("counter");
+        user.setName("Counter");
+        user.setBirthday(LocalDate.of(1990, 1, 1));
+        int userId = userStorage.addUser(user).getId();
+
+        addFilms(3, userId);
+        statementCounter.reset();
+        Collection<Film> smallCatalog = filmStorage.getAllFilms();
+        int smallCatalogStatements = statementCounter.count();
+
+        addFilms(20, userId);
+        statementCounter.reset();
+        Collection<Film> largeCatalog = filmStorage.getAllFilms();
+        int largeCatalogStatements = statementCounter.count();
+
+        assertThat(largeCatalog).hasSize(smallCatalog.size() + 20);
+        assertThat(largeCatalogStatements).isEqualTo(smallCatalogStatements);
+    }
+
+    @Test
+    public void getAllFilmsHydratesMpaGenresAndLikes() {
+        User user = new User();
+        user.setEmail("hydrate@mail.com");
+        user.setLogin("hydrate");
+        user.setName("Hydrate");
+        user.setBirthday(LocalDate.of(1990, 1, 1));
+        int userId = userStorage.addUser(user).getId();
+
+        int filmId = addFilms(1, userId);
+
+        Film film = filmStorage.getAllFilms().stream()
+                .filter(f -> f.getId() == filmId)
+                .findFirst()
+                .orElseThrow();
+
+        assertThat(film.getMpa().getCode()).isEqualTo("G");
+        assertThat(film.getGenres()).extracting(Genre::getId).containsExactly(1, 2);
+        assertThat(film.getLikes()).containsExactly(userId);
+    }
+
+    @Test
+    public void updateFilmWritesOnlyGenreDifference() {
+        Film film = new Film();
+        film.setName("Genres");
+        film.setDescription("Genre diff");
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setDuration(100);
+        Mpa mpa = new Mpa();
+        mpa.setId(1);
+        film.setMpa(mpa);
+        film.setGenres(genres(1, 2));
+        Film saved = filmStorage.addFilm(film);
+
+        saved.setGenres(genres(1, 2));
+        statementCounter.reset();
+        filmStorage.updateFilm(saved);
+        int unchangedStatements = statementCounter.count();
+
+        saved.setGenres(genres(2, 3));
+        statementCounter.reset();
+        Film updated = filmStorage.updateFilm(saved);
+        int changedStatements = statementCounter.count();
+
+        assertThat(updated.getGenres()).extracting(Genre::getId).containsExactly(2, 3);
+        // одна батч-операция на удаление и одна на вставку, независимо от числа жанров
+        assertThat(changedStatements - unchangedStatements).isEqualTo(2);
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void addFilmIsRolledBackWhenGenreInsertFails() {
+        Integer filmsBefore = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM films", Integer.class);
+
+        Film film = new Film();
+        film.setName("Broken");
+        film.setDescription("Unknown genre");
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setDuration(100);
+        Mpa mpa = new Mpa();
+        mpa.setId(1);
+        film.setMpa(mpa);
+        film.setGenres(genres(1, 999));
+
+        assertThrows(DataIntegrityViolationException.class, () -> filmStorage.addFilm(film));
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM films", Integer.class))
+                .isEqualTo(filmsBefore);
+    }
+
+    private Set<Genre> genres(int... ids) {
+        Set<Genre> genres = new LinkedHashSet<>();
+        for (int id : ids) {
+            Genre genre = new Genre();
+            genre.setId(id);
+            genres.add(genre);
+        }
+        return genres;
+    }
+
+    @Test
+    public void sqlStatisticsSeeEveryStatementAndRow() {
+        User user = new User();
+        user.setEmail("metrics@mail.com");
+        user.setLogin("metrics");
+        user.setName("Metrics");
+        user.setBirthday(LocalDate.of(1990, 1, 1));
+        int userId = userStorage.addUser(user).getId();
+        int filmId = addFilms(1, userId);
+
+        statementCounter.reset();
+        SqlStatistics.Snapshot start = sqlStatistics.snapshot();
+        filmStorage.getById(filmId);
+        SqlStatistics.Snapshot used = sqlStatistics.snapshot().since(start);
+
+        assertThat(used.statements()).isEqualTo(statementCounter.count());
+        assertThat(used.rows()).isEqualTo(1);
+    }
+
+    @Test
+    public void getByIdIsOneRoundTrip() {
+        User user = new User();
+        user.setEmail("single@mail.com");
+        user.setLogin("single");
+        user.setName("Single");
+        user.setBirthday(LocalDate.of(1990, 1, 1));
+        int userId = userStorage.addUser(user).getId();
+        int filmId = addFilms(1, userId);
+
+        statementCounter.reset();
+        Film film = filmStorage.getById(filmId);
+
+        assertThat(statementCounter.count()).isEqualTo(1);
+        assertThat(film.getMpa().getName()).isNotBlank();
+        assertThat(film.getGenres()).extracting(Genre::getId).containsExactly(1, 2);
+        assertThat(film.getGenres()).extracting(Genre::getName).doesNotContainNull();
+        assertThat(film.getLikes()).containsExactly(userId);
+    }
+
+    @Test
+    public void popularFilmsAreFilteredByGenreAndYearInTheDatabase() {
+        int[] users = new int[3];
+        for (int i = 0; i < users.length; i++) {
+            User user = new User();
+            user.setEmail("filter" + i + "@mail.com");
+            user.setLogin("filter" + i);
+            user.setName("Filter " + i);
+            user.setBirthday(LocalDate.of(1990, 1, 1));
+            users[i] = userStorage.addUser(user).getId();
+        }
+        int thrillerOf1977 = addFilm(LocalDate.of(1977, 5, 25), 6, users[0], users[1]);
+        int comedyOf1977 = addFilm(LocalDate.of(1977, 12, 31), 1, users[0]);
+        int thrillerOf1978 = addFilm(LocalDate.of(1978, 1, 1), 6, users[0], users[1], users[2]);
+
+        assertThat(filmStorage.getPopularFilms(10, 6, 1977)).extracting(Film::getId)
+                .containsExactly(thrillerOf1977);
+        assertThat(filmStorage.getPopularFilms(10, null, 1977)).extracting(Film::getId)
+                .containsExactly(thrillerOf1977, comedyOf1977);
+        assertThat(filmStorage.getPopularFilms(10, 6, null)).extracting(Film::getId)
+                .containsSubsequence(thrillerOf1978, thrillerOf1977);
+
+        statementCounter.reset();
+        assertThat(filmStorage.getPopularFilms(1, 6, null)).extracting(Film::getId)
+                .containsExactly(thrillerOf1978);
+        assertThat(statementCounter.count()).isEqualTo(3);
+
+        String plan = jdbcTemplate.queryForObject("EXPLAIN SELECT f.* FROM films f WHERE EXISTS "
+                + "(SELECT 1 FROM film_genres fg WHERE fg.genre_id = 6 AND fg.film_id = f.film_id) "
+                + "AND f.release_date >= DATE '1977-01-01' AND f.release_date < DATE '1978-01-01' "
+                + "ORDER BY f.like_count DESC, f.film_id LIMIT 10", String.class);
+        assertThat(plan).contains("IDX_FILMS_RELEASE_DATE");
+    }
+
+    @Test
+    public void projectionSelectsOnlyRequestedFieldsWithoutGenreAndLikeQueries() {
+        User user = new User();
+        user.setEmail("projection@mail.com");
+        user.setLogin("projection");
+        user.setName("Projection");
+        user.setBirthday(LocalDate.of(1990, 1, 1));
+        int lastId = addFilms(3, userStorage.addUser(user).getId());
+
+        statementCounter.reset();
+        List<Map<String, Object>> page = filmService.getFilmsProjection(lastId - 3, 3, "name,mpa");
+        assertThat(statementCounter.count()).isEqualTo(1);
+        assertThat(page).hasSize(3);
+        assertThat(page.get(2)).containsOnlyKeys("id", "name", "mpa").containsEntry("id", lastId);
+        assertThat(((FilmDto.MpaDto) page.get(2).get("mpa")).getName()).isEqualTo("G");
+
+        statementCounter.reset();
+        List<Map<String, Object>> withGenres = filmService.getFilmsProjection(lastId - 1, 1, "genres,likeCount");
+        assertThat(statementCounter.count()).isEqualTo(2);
+        assertThat(withGenres.get(0)).containsOnlyKeys("id", "genres", "likeCount").containsEntry("likeCount", 1);
+        assertThat((Set<?>) withGenres.get(0).get("genres")).hasSize(2);
+
+        statementCounter.reset();
+        assertThat(filmService.getPopularFilmsProjection(1, null, null, "releaseDate").get(0))
+                .containsOnlyKeys("id", "releaseDate");
+        assertThat(statementCounter.count()).isEqualTo(1);
+        assertThrows(ValidationException.class, () -> filmService.getFilmsProjection(null, null, "id,likes"));
+        // Число популярных фильмов проверяется до запроса, как размер страницы
+        assertThrows(ValidationException.class, () -> filmService.getPopularFilms(-1, null, null));
+        assertThrows(ValidationException.class, () -> filmService.getPopularFilmsProjection(0, null, null, "id"));
+        assertThrows(ValidationException.class, () -> filmService.getPopularFilms(1001, null, null));
+    }
+
+    @Test
+    public void filmWritesAreAssembledWithoutReReading() {
+        User user = new User();
+        user.setEmail("writer@mail.com");
+        user.setLogin("writer");
+        user.setName("Writer");
+        user.setBirthday(LocalDate.of(1990, 1, 1));
+        int userId = userStorage.addUser(user).getId();
+
+        Film film = new Film();
+        film.setName("Budget");
+        film.setDescription("Budget");
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setDuration(100);
+        Mpa mpa = new Mpa();
+        mpa.setId(3);
+        film.setMpa(mpa);
+        film.setGenres(genres(2, 1));
+
+        statementCounter.reset();
+        Film added = filmStorage.addFilm(film);
+        assertThat(statementCounter.count()).isEqualTo(2);
+        assertThat(added).usingRecursiveComparison().isEqualTo(filmStorage.getById(added.getId()));
+        filmStorage.addLike(added.getId(), userId);
+
+        Film changed = filmStorage.getById(added.getId());
+        changed.setName("Budget 2");
+        changed.setGenres(genres(2, 3));
+        statementCounter.reset();
+        Film updated = filmStorage.updateFilm(changed);
+        assertThat(statementCounter.count()).isEqualTo(3);
+        assertThat(updated).usingRecursiveComparison().isEqualTo(filmStorage.getById(added.getId()));
+
+        updated.setGenres(new LinkedHashSet<>());
+        statementCounter.reset();
+        Film keptGenres = filmStorage.updateFilm(updated);
+        assertThat(statementCounter.count()).isEqualTo(1);
+        assertThat(keptGenres.getGenres()).extracting(Genre::getId).containsExactly(2, 3);
+        assertThat(keptGenres.getLikes()).containsExactly(userId);
+        assertThat(keptGenres.getLikeCount()).isEqualTo(1);
+
+        keptGenres.setId(999_999);
+        assertThrows(NotFoundException.class, () -> filmStorage.updateFilm(keptGenres));
+    }
+
+    private int addFilm(LocalDate releaseDate, int genreId, int... likedBy) {
+        Film film = new Film();
+        film.setName("Filtered " + releaseDate);
+        film.setDescription("Filtered");
+        film.setReleaseDate(releaseDate);
+        film.setDuration(100);
+        Mpa mpa = new Mpa();
+        mpa.setId(1);
+        film.setMpa(mpa);
+        film.setGenres(genres(genreId));
+        int filmId = filmStorage.addFilm(film).getId();
+        for (int userId : likedBy) {
+            filmStorage.addLike(filmId, userId);
+        }
+        return filmId;
+    }
+
+    private int addFilms(int count, int likedBy) {
+        int lastId = 0;
+        for (int i = 0; i < count; i++) {
+            Film film = new Film();
+            film.setName("Film " + i);
+            film.setDescription("Description " + i);
+            film.setReleaseDate(LocalDate.of(2000, 1, 1));
+            film.setDuration(100);
+            Mpa mpa = new Mpa();
+            mpa.setId(1);
+            film.setMpa(mpa);
+            Genre comedy = new Genre();
+            comedy.setId(1);
+            Genre drama = new Genre();
+            drama.setId(2);
+            film.setGenres(Set.of(comedy, drama));
+
+            lastId = filmStorage.addFilm(film).getId();
+            filmStorage.addLike(lastId, likedBy);
+        }
+        return lastId;
+    }
+}
@@ -5,7 +5,9 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.boot.test.autoconfigure.json.AutoConfigureJson;
 import org.springframework.context.annotation.ComponentScan;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Mpa;
 import ru.yandex.practicum.filmorate.model.User;
@@ -13,12 +15,16 @@ import ru.yandex.practicum.filmorate.storage.FilmDbStorage;
 import ru.yandex.practicum.filmorate.storage.UserDbStorage;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 @JdbcTest
 @AutoConfigureTestDatabase
+@AutoConfigureJson
 @RequiredArgsConstructor(onConstructor_ = @Autowired)
 @ComponentScan(basePackages = "ru.yandex.practicum.filmorate")
 class FilmDbStorageTest {
@@ -216,4 +222,147 @@ class FilmDbStorageTest {
 
         assertThat(likes).isNotEmpty();
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testGetPopularFilms() {
+        Film film1 = new Film();
+        film1.setName("Less Popular");
+        film1.setDescription("Test Description 1");
+        film1.setReleaseDate(LocalDate.of(2020, 1, 1));
+        film1.setDuration(120);
+        Mpa mpa1 = new Mpa();
+        mpa1.setId(1);
+        film1.setMpa(mpa1);
+        Film addedFilm1 = filmStorage.addFilm(film1);
+
+        Film film2 = new Film();
+        film2.setName("Most Popular");
+        film2.setDescription("Test Description 2");
+        film2.setReleaseDate(LocalDate.of(2021, 5, 15));
+        film2.setDuration(90);
+        Mpa mpa2 = new Mpa();
+        mpa2.setId(2);
+        film2.setMpa(mpa2);
+        Film addedFilm2 = filmStorage.addFilm(film2);
+
+        User user1 = new User();
+        user1.setEmail("popular1@mail.com");
+        user1.setLogin("popular1");
+        user1.setName("Popular User 1");
+        user1.setBirthday(LocalDate.of(1990, 1, 1));
+        User addedUser1 = userStorage.addUser(user1);
+
+        User user2 = new User();
+        user2.setEmail("popular2@mail.com");
+        user2.setLogin("popular2");
+        user2.setName("Popular User 2");
+        user2.setBirthday(LocalDate.of(1990, 1, 1));
+        User addedUser2 = userStorage.addUser(user2);
+
+        filmStorage.addLike(addedFilm1.getId(), addedUser1.getId());
+        filmStorage.addLike(addedFilm2.getId(), addedUser1.getId());
+        filmStorage.addLike(addedFilm2.getId(), addedUser2.getId());
+        filmStorage.addLike(addedFilm2.getId(), addedUser2.getId());
+
+        List<Film> popular = new ArrayList<>(filmStorage.getPopularFilms(2, null, null));
+
+        assertThat(popular).extracting(Film::getId)
+                .containsExactly(addedFilm2.getId(), addedFilm1.getId());
+        assertThat(popular.get(0).getLikes()).hasSize(2);
+        assertThat(popular.get(0).getLikeCount()).isEqualTo(2);
+
+        filmStorage.removeLike(addedFilm2.getId(), addedUser1.getId());
+        filmStorage.removeLike(addedFilm2.getId(), addedUser2.getId());
+
+        popular = new ArrayList<>(filmStorage.getPopularFilms(1, null, null));
+
+        assertThat(popular).extracting(Film::getId).containsExactly(addedFilm1.getId());
+    }
+
+    @Test
+    public void testLikeCountIgnoresDuplicatesAndUnknownIds() {
+        Film film = new Film();
+        film.setName("Counted");
+        film.setDescription("Like count");
+        film.setReleaseDate(LocalDate.of(2020, 1, 1));
+        film.setDuration(100);
+        Mpa mpa = new Mpa();
+        mpa.setId(1);
+        film.setMpa(mpa);
+        int filmId = filmStorage.addFilm(film).getId();
+
+        User user = new User();
+        user.setEmail("counted@mail.com");
+        user.setLogin("counted");
+        user.setName("Counted");
+        user.setBirthday(LocalDate.of(1990, 1, 1));
+        int userId = userStorage.addUser(user).getId();
+
+        filmStorage.addLike(filmId, userId);
+        filmStorage.addLike(filmId, userId);
+        assertThat(filmStorage.getById(filmId).getLikeCount()).isEqualTo(1);
+
+        filmStorage.removeLike(filmId, userId);
+        filmStorage.removeLike(filmId, userId);
+        assertThat(filmStorage.getById(filmId).getLikeCount()).isZero();
+
+        assertThrows(NotFoundException.class, () -> filmStorage.addLike(filmId, 999_999));
+        assertThrows(NotFoundException.class, () -> filmStorage.addLike(999_999, userId));
+    }
+
+    @Test
+    public void testVersionChangesWithFilmAndLikes() {
+        Film film = new Film();
+        film.setName("Versioned");
+        film.setDescription("Version");
+        film.setReleaseDate(LocalDate.of(2020, 1, 1));
+        film.setDuration(100);
+        Mpa mpa = new Mpa();
+        mpa.setId(1);
+        film.setMpa(mpa);
+        Film saved = filmStorage.addFilm(film);
+        int filmId = saved.getId();
+
+        User user = new User();
+        user.setEmail("versioned@mail.com");
+        user.setLogin("versioned");
+        user.setName("Versioned");
+        user.setBirthday(LocalDate.of(1990, 1, 1));
+        int userId = userStorage.addUser(user).getId();
+
+        long created = filmStorage.getVersion(filmId);
+        filmStorage.addLike(filmId, userId);
+        long liked = filmStorage.getVersion(filmId);
+        filmStorage.addLike(filmId, userId);
+        assertThat(filmStorage.getVersion(filmId)).isEqualTo(liked);
+
+        saved.setName("Versioned again");
+        long updated = filmStorage.updateFilm(saved).getVersion();
+
+        assertThat(liked).isGreaterThan(created);
+        assertThat(updated).isGreaterThan(liked).isEqualTo(filmStorage.getVersion(filmId));
+        assertThrows(NotFoundException.class, () -> filmStorage.getVersion(999_999));
+    }
+
+    @Test
+    public void testGetFilmsAfter() {
+        int lastId = 0;
+        for (int i = 0; i < 3; i++) {
+            Film film = new Film();
+            film.setName("Page Film " + i);
+            film.setDescription("Test Description");
+            film.setReleaseDate(LocalDate.of(2020, 1, 1));
+            film.setDuration(120);
+            Mpa mpa = new Mpa();
+            mpa.setId(1);
+            film.setMpa(mpa);
+            lastId = filmStorage.addFilm(film).getId();
+        }
+
+        Collection<Film> page = filmStorage.getFilmsAfter(lastId - 2, 1);
+
+        assertThat(page).extracting(Film::getId).containsExactly(lastId - 1);
+        assertThat(page.iterator().next().getMpa().getCode()).isEqualTo("G");
+        assertThat(filmStorage.getFilmsAfter(lastId, 10)).isEmpty();
+    }
+}
@@ -0,0 +1,114 @@
+package ru.yandex.practicum.filmorate;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.boot.test.autoconfigure.json.AutoConfigureJson;
+import org.springframework.context.annotation.ComponentScan;
+import ru.yandex.practicum.filmorate.dto.FilmDto;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.storage.UserDbStorage;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@AutoConfigureJson
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@ComponentScan(basePackages = "ru.yandex.practicum.filmorate")
+class FilmSearchTest {
+    private static final List<String> ALL_FIELDS = List.of("title", "description");
+
+    private final FilmService filmService;
+    private final UserDbStorage userStorage;
+
+    @Test
+    public void tokenizerSplitsCyrillicAndLatinAndFoldsYo() {
+        assertThat(FilmSearchIndex.tokenize("Ёлки-палки, The Matrix 2!"))
+                .containsExactly("елки", "палки", "the", "matrix", "2");
+    }
+
+    @Test
+    public void findsByPrefixAndRanksTitleMatchesThenLikes() {
+        int lessPopular = addFilm("Звездолётчики", "Про космос").getId();
+        int popular = addFilm("Звездолёт", "Тоже про космос").getId();
+        int byDescription = addFilm("Туманность", "Звездолёт уходит в туман").getId();
+        filmService.addLike(popular, addUser("searcher"));
+
+        assertThat(search("звездолет")).containsExactly(popular, lessPopular, byDescription);
+        assertThat(search("ЗВЕЗД")).containsExactly(popular, lessPopular, byDescription);
+        assertThat(filmService.searchFilms("звездолет", List.of("description"), null))
+                .extracting(FilmDto::getId).containsExactly(byDescription);
+    }
+
+    // Одинаково релевантные фильмы на границе выдачи отбираются по числу лайков из индекса
+    @Test
+    public void limitKeepsBestHitsAndBreaksTiesByLikes() {
+        int first = addFilm("Криостаз один", "Описание").getId();
+        int second = addFilm("Криостаз два", "Описание").getId();
+        int third = addFilm("Криостаз три", "Описание").getId();
+        int user = addUser("limitSearcher");
+        filmService.addLike(third, user);
+        filmService.addLike(second, user);
+        filmService.addLike(second, addUser("limitSearcher2"));
+
+        assertThat(search("криостаз", 2)).containsExactly(second, third);
+        assertThat(search("криостаз", 1)).containsExactly(second);
+
+        filmService.removeLike(second, user);
+        filmService.removeLike(second, user);
+        assertThat(search("криостаз", 3)).containsExactly(second, third, first);
+        assertThrows(ValidationException.class, () -> filmService.searchFilms("криостаз", ALL_FIELDS, 0));
+        assertThrows(ValidationException.class, () -> filmService.searchFilms("криостаз", ALL_FIELDS, 1001));
+    }
+
+    @Test
+    public void updatedFilmIsFoundOnlyByNewWords() {
+        FilmDto film = addFilm("Квазиэнтропия", "Первое описание");
+        film.setName("Гиперкварк");
+        filmService.updateFilm(film);
+
+        assertThat(search("квазиэнтропия")).isEmpty();
+        assertThat(search("гиперкв")).containsExactly(film.getId());
+        assertThrows(ValidationException.class, () -> filmService.searchFilms(" ", ALL_FIELDS, null));
+        assertThrows(ValidationException.class, () -> filmService.searchFilms("гипер", List.of("director"), null));
+    }
+
+    private List<Integer> search(String query) {
+        return search(query, null);
+    }
+
+    private List<Integer> search(String query, Integer limit) {
+        return filmService.searchFilms(query, ALL_FIELDS, limit).stream().map(FilmDto::getId).toList();
+    }
+
+    private FilmDto addFilm(String name, String description) {
+        FilmDto film = new FilmDto();
+        film.setName(name);
+        film.setDescription(description);
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setDuration(100);
+        FilmDto.MpaDto mpa = new FilmDto.MpaDto();
+        mpa.setId(1);
+        film.setMpa(mpa);
+        return filmService.addFilm(film);
+    }
+
+    private int addUser(String login) {
+        User user = new User();
+        user.setEmail(login + "@mail.com");
+        user.setLogin(login);
+        user.setName(login);
+        user.setBirthday(LocalDate.of(1990, 1, 1));
+        return userStorage.addUser(user).getId();
+    }
+}
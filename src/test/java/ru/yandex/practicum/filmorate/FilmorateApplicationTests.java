@@ -2,14 +2,19 @@ package ru.yandex.practicum.filmorate;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
 import ru.yandex.practicum.filmorate.controller.FilmController;
+import ru.yandex.practicum.filmorate.controller.NdjsonWriter;
 import ru.yandex.practicum.filmorate.dto.FilmDto;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
 import ru.yandex.practicum.filmorate.mapper.FilmMapper;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmField;
 import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.service.FilmSearchIndex;
 import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.LikesIndex;
 import ru.yandex.practicum.filmorate.storage.FilmStorage;
 import ru.yandex.practicum.filmorate.storage.GenreStorage;
 import ru.yandex.practicum.filmorate.storage.MpaStorage;
@@ -17,6 +22,7 @@ import ru.yandex.practicum.filmorate.storage.MpaStorage;
 import java.time.LocalDate;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -32,8 +38,9 @@ class FilmorateApplicationTests {
         GenreStorage genreStorage = new SimpleGenreStorage();
         FilmMapper filmMapper = new FilmMapper();
 
-        FilmService filmService = new FilmService(filmStorage, mpaStorage, genreStorage, filmMapper);
-        filmController = new FilmController(filmService);
+        FilmService filmService = new FilmService(filmStorage, mpaStorage, genreStorage, filmMapper,
+                new LikesIndex(filmStorage), new FilmSearchIndex(filmStorage));
+        filmController = new FilmController(filmService, new NdjsonWriter(Jackson2ObjectMapperBuilder.json().build()));
     }
 
     static class SimpleFilmStorage implements FilmStorage {
@@ -42,12 +49,37 @@ class FilmorateApplicationTests {
             return new HashSet<>();
         }
 
+        @Override
+        public Collection<Film> getPopularFilms(int count, Integer genreId, Integer year) {
+            return new HashSet<>();
+        }
+
+        @Override
+        public Collection<Film> getFilmsAfter(int afterId, int limit) {
+            return new HashSet<>();
+        }
+
+        @Override
+        public Collection<Film> getPopularFilms(int count, Integer genreId, Integer year, Set<FilmField> fields) {
+            return new HashSet<>();
+        }
+
+        @Override
+        public Collection<Film> getFilmsAfter(int afterId, int limit, Set<FilmField> fields) {
+            return new HashSet<>();
+        }
+
         @Override
         public Film addFilm(Film film) {
             film.setId(1);
             return film;
         }
 
+        @Override
+        public List<Film> addFilms(List<Film> films) {
+            return films;
+        }
+
         @Override
         public Film updateFilm(Film film) {
             return film;
@@ -61,17 +93,29 @@ class FilmorateApplicationTests {
         }
 
         @Override
-        public void addLike(int filmId, int userId) {
+        public boolean addLike(int filmId, int userId) {
+            return false;
         }
 
         @Override
-        public void removeLike(int filmId, int userId) {
+        public boolean removeLike(int filmId, int userId) {
+            return false;
         }
 
         @Override
         public Set<Integer> getLikes(int filmId) {
             return new HashSet<>();
         }
+
+        @Override
+        public long getVersion(int id) {
+            return 0;
+        }
+
+        @Override
+        public List<Film> getFilmsByIds(Collection<Integer> ids) {
+            return List.of();
+        }
     }
 
     static class SimpleMpaStorage implements MpaStorage {
@@ -90,6 +134,11 @@ class FilmorateApplicationTests {
         public Collection<Mpa> getAllMpa() {
             return new HashSet<>();
         }
+
+        @Override
+        public long getVersion() {
+            return 0;
+        }
     }
 
     static class SimpleGenreStorage implements GenreStorage {
@@ -108,6 +157,11 @@ class FilmorateApplicationTests {
         public Collection<Genre> getAllGenres() {
             return new HashSet<>();
         }
+
+        @Override
+        public long getVersion() {
+            return 0;
+        }
     }
 
     @Test
@@ -0,0 +1,152 @@
+package ru.yandex.practicum.filmorate;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.boot.test.autoconfigure.json.AutoConfigureJson;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.InMemoryUserStorage;
+import ru.yandex.practicum.filmorate.storage.UserDbStorage;
+import ru.yandex.practicum.filmorate.storage.UserStorage;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@AutoConfigureJson
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@ComponentScan(basePackages = "ru.yandex.practicum.filmorate")
+class FriendshipWorkflowTest {
+    private static final int PAIRS = 20;
+
+    private final UserDbStorage userDbStorage;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Test
+    public void dbStorageFollowsFriendshipWorkflow() {
+        checkWorkflow(userDbStorage);
+    }
+
+    @Test
+    public void inMemoryStorageFollowsTheSameWorkflow() {
+        checkWorkflow(new InMemoryUserStorage());
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void simultaneousMutualRequestsBecomeOneConfirmedFriendship() throws Exception {
+        List<int[]> pairs = new ArrayList<>();
+        for (int i = 0; i < PAIRS; i++) {
+            pairs.add(new int[]{addUser(userDbStorage, "mutualA" + i), addUser(userDbStorage, "mutualB" + i)});
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            for (int[] pair : pairs) {
+                CountDownLatch start = new CountDownLatch(1);
+                Future<?> forward = executor.submit(() -> {
+                    start.await();
+                    userDbStorage.addFriend(pair[0], pair[1]);
+                    return null;
+                });
+                Future<?> backward = executor.submit(() -> {
+                    start.await();
+                    userDbStorage.addFriend(pair[1], pair[0]);
+                    return null;
+                });
+                start.countDown();
+                forward.get();
+                backward.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        for (int[] pair : pairs) {
+            assertThat(userDbStorage.getFriends(pair[0])).containsExactly(pair[1]);
+            assertThat(userDbStorage.getFriends(pair[1])).containsExactly(pair[0]);
+            assertThat(jdbcTemplate.queryForList("SELECT status FROM friendships WHERE low_id = ? AND high_id = ?",
+                    String.class, Math.min(pair[0], pair[1]), Math.max(pair[0], pair[1])))
+                    .containsExactly("CONFIRMED");
+        }
+    }
+
+    @Test
+    public void requestAndFriendListsAreReadFromIndexes() {
+        String incoming = jdbcTemplate.queryForObject(
+                "EXPLAIN SELECT user_id FROM friendships WHERE friend_id = 1 AND status = 'PENDING'", String.class);
+        String confirmed = jdbcTemplate.queryForObject(
+                "EXPLAIN SELECT friend_id FROM friendships WHERE user_id = 1 AND status = 'CONFIRMED'", String.class);
+
+        assertThat(incoming).contains("IDX_FRIENDSHIPS_INCOMING");
+        assertThat(confirmed).contains("IDX_FRIENDSHIPS_OUTGOING");
+    }
+
+    private void checkWorkflow(UserStorage storage) {
+        int anna = addUser(storage, "anna");
+        int boris = addUser(storage, "boris");
+        int clara = addUser(storage, "clara");
+
+        // Заявка видна в списке друзей только у её автора
+        storage.addFriend(anna, boris);
+        assertThat(storage.getFriends(anna)).containsExactly(boris);
+        assertThat(storage.getFriends(boris)).isEmpty();
+        assertThat(storage.getFriendRequests(boris)).extracting(User::getId).containsExactly(anna);
+        assertThrows(ValidationException.class, () -> storage.addFriend(anna, boris));
+
+        storage.confirmFriend(boris, anna);
+        assertThat(storage.getFriends(boris)).containsExactly(anna);
+        assertThat(storage.getFriendRequests(boris)).isEmpty();
+        assertThrows(NotFoundException.class, () -> storage.confirmFriend(boris, anna));
+        assertThrows(ValidationException.class, () -> storage.addFriend(boris, anna));
+
+        storage.addFriend(clara, anna);
+        storage.declineFriend(anna, clara);
+        assertThat(storage.getFriends(clara)).isEmpty();
+        assertThat(storage.getFriendRequests(anna)).isEmpty();
+        assertThrows(NotFoundException.class, () -> storage.declineFriend(anna, clara));
+
+        // Отклонённую заявку можно отправить заново
+        storage.addFriend(clara, anna);
+        assertThat(storage.getFriendRequests(anna)).extracting(User::getId).containsExactly(clara);
+
+        // Удалённый из друзей остаётся с заявкой, и встречная заявка снова подтверждает дружбу
+        storage.removeFriend(anna, boris);
+        assertThat(storage.getFriends(anna)).isEmpty();
+        assertThat(storage.getFriends(boris)).containsExactly(anna);
+        assertThat(storage.getFriendRequests(anna)).extracting(User::getId).containsExactly(boris, clara);
+        storage.addFriend(anna, boris);
+        assertThat(storage.getFriends(anna)).containsExactly(boris);
+        assertThat(storage.getById(boris).getFriends()).containsExactly(anna);
+
+        assertThrows(NotFoundException.class, () -> storage.addFriend(anna, 999_999));
+        assertThrows(NotFoundException.class, () -> storage.confirmFriend(anna, 999_999));
+        assertThrows(NotFoundException.class, () -> storage.removeFriend(999_999, anna));
+    }
+
+    private int addUser(UserStorage storage, String login) {
+        User user = new User();
+        user.setEmail(login + "@mail.com");
+        user.setLogin(login);
+        user.setName(login);
+        user.setBirthday(LocalDate.of(1990, 1, 1));
+        return storage.addUser(user).getId();
+    }
+}
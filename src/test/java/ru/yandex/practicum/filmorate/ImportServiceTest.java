@@ -0,0 +1,112 @@
+package ru.yandex.practicum.filmorate;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.boot.test.autoconfigure.json.AutoConfigureJson;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.dto.ImportResult;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.service.ImportService;
+import ru.yandex.practicum.filmorate.storage.FilmDbStorage;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@AutoConfigureJson
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@ComponentScan(basePackages = "ru.yandex.practicum.filmorate")
+class ImportServiceTest {
+    private final ImportService importService;
+    private final FilmDbStorage filmStorage;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Test
+    public void importFilmsFromNdjsonReportsBadRowsAndKeepsGoodOnes() throws Exception {
+        int filmsBefore = countFilms();
+        String body = """
+                {"name":"Import 1","description":"First","releaseDate":"2001-01-01","duration":100,"mpa":{"id":1},"genres":[{"id":1},{"id":2}]}
+                {"name":"Import 2","description":"Unknown MPA","releaseDate":"2001-01-01","duration":100,"mpa":{"id":999}}
+                not json
+                {"name":"Import 3","description":"Third","releaseDate":"2002-02-02","duration":90,"mpa":{"id":2}}
+                """;
+
+        ImportResult result = importService.importFilms(stream(body), "application/x-ndjson");
+
+        assertThat(result.getImported()).isEqualTo(2);
+        assertThat(result.getFailed()).isEqualTo(2);
+        assertThat(result.getErrors()).extracting(ImportResult.RowError::getLine).containsExactly(2L, 3L);
+        assertThat(countFilms()).isEqualTo(filmsBefore + 2);
+
+        Film imported = filmStorage.getAllFilms().stream()
+                .filter(film -> film.getName().equals("Import 1"))
+                .findFirst()
+                .orElseThrow();
+        assertThat(imported.getGenres()).extracting(Genre::getId).containsExactly(1, 2);
+    }
+
+    @Test
+    public void importFilmsFromCsv() throws Exception {
+        int filmsBefore = countFilms();
+        String body = """
+                name,description,releaseDate,duration,mpa,genres
+                "Csv, quoted","Says \"\"hi\"\"",1999-09-09,95,3,4|6
+                Too early,Old,1800-01-01,95,3,
+                """;
+
+        ImportResult result = importService.importFilms(stream(body), "text/csv; charset=utf-8");
+
+        assertThat(result.getImported()).isEqualTo(1);
+        assertThat(result.getErrors()).extracting(ImportResult.RowError::getLine).containsExactly(3L);
+        assertThat(countFilms()).isEqualTo(filmsBefore + 1);
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT description FROM films WHERE name = 'Csv, quoted'", String.class)).isEqualTo("Says \"hi\"");
+    }
+
+    @Test
+    public void importUsersSkipsOnlyDuplicateRows() throws Exception {
+        String body = """
+                {"email":"bulk1@mail.com","login":"bulk1","name":"Bulk 1","birthday":"1990-01-01"}
+                {"email":"bulk2@mail.com","login":"bulk2","birthday":"1991-01-01"}
+                {"email":"bulk1@mail.com","login":"bulk3","name":"Duplicate email","birthday":"1992-01-01"}
+                {"email":"bulk4@mail.com","login":"bad login","birthday":"1993-01-01"}
+                {"email":"BULK2@Mail.com","login":"bulk5","birthday":"1994-01-01"}
+                """;
+
+        ImportResult result = importService.importUsers(stream(body), "application/x-ndjson");
+
+        assertThat(result.getImported()).isEqualTo(2);
+        assertThat(result.getErrors()).extracting(ImportResult.RowError::getLine)
+                .containsExactlyInAnyOrder(3L, 4L, 5L);
+        assertThat(result.getErrors()).filteredOn(error -> error.getLine() == 5L)
+                .extracting(ImportResult.RowError::getMessage).containsExactly("Этот email уже используется");
+
+        // Email, отличающийся от сохранённого только регистром, отклоняется и в следующей загрузке
+        ImportResult repeated = importService.importUsers(stream("""
+                {"email":"Bulk1@MAIL.com","login":"bulk6","birthday":"1995-01-01"}
+                """), "application/x-ndjson");
+        assertThat(repeated.getImported()).isZero();
+        assertThat(repeated.getErrors()).extracting(ImportResult.RowError::getLine).containsExactly(1L);
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM users WHERE LOWER(email) = 'bulk1@mail.com'", Integer.class)).isEqualTo(1);
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT name FROM users WHERE login = 'bulk2'", String.class)).isEqualTo("bulk2");
+    }
+
+    private int countFilms() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM films", Integer.class);
+    }
+
+    private InputStream stream(String body) {
+        return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+    }
+}
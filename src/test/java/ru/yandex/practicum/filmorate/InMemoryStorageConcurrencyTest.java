@@ -0,0 +1,312 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.mapper.FilmMapper;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.IntSet;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.LikesIndex;
+import ru.yandex.practicum.filmorate.storage.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.InMemoryUserStorage;
+import ru.yandex.practicum.filmorate.storage.MpaStorage;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class InMemoryStorageConcurrencyTest {
+    private static final int THREADS = 8;
+    private static final int TASKS = 400;
+
+    @Test
+    void concurrentInsertsGetUniqueSequentialIds() throws Exception {
+        InMemoryUserStorage storage = new InMemoryUserStorage();
+
+        runConcurrently(i -> storage.addUser(user("user" + i + "@mail.ru", "user" + i)));
+
+        assertThat(storage.getAllUsers()).hasSize(TASKS);
+        assertThat(storage.getUsersAfter(0, TASKS).stream().map(User::getId))
+                .containsExactlyElementsOf(IntStream.rangeClosed(1, TASKS).boxed().toList());
+    }
+
+    @Test
+    void concurrentInsertsWithSameEmailKeepOnlyOne() throws Exception {
+        InMemoryUserStorage storage = new InMemoryUserStorage();
+        AtomicInteger rejected = new AtomicInteger();
+
+        runConcurrently(i -> {
+            try {
+                storage.addUser(user("Same@Mail.ru", "login" + i));
+            } catch (ValidationException e) {
+                rejected.incrementAndGet();
+            }
+        });
+
+        assertThat(storage.getAllUsers()).hasSize(1);
+        assertThat(rejected.get()).isEqualTo(TASKS - 1);
+    }
+
+    // Встречные заявки подтверждают дружбу, повторные отклоняются: в итоге каждая пара - взаимные друзья
+    @Test
+    void concurrentMutualRequestsBecomeConfirmedFriendships() throws Exception {
+        InMemoryUserStorage storage = new InMemoryUserStorage();
+        for (int i = 1; i <= 20; i++) {
+            storage.addUser(user("friend" + i + "@mail.ru", "friend" + i));
+        }
+
+        runConcurrently(i -> {
+            int userId = i % 20 + 1;
+            int friendId = (i * 7) % 20 + 1;
+            if (userId != friendId) {
+                request(storage, userId, friendId);
+                request(storage, friendId, userId);
+            }
+        });
+
+        for (User user : storage.getAllUsers()) {
+            assertThat(storage.getFriendRequests(user.getId())).isEmpty();
+            for (int friendId : user.getFriends()) {
+                assertThat(storage.getFriends(friendId)).contains(user.getId());
+            }
+        }
+    }
+
+    @Test
+    void concurrentLikesAndUpdatesAreNotLost() throws Exception {
+        InMemoryFilmStorage storage = new InMemoryFilmStorage(withUsers(TASKS));
+        Film film = storage.addFilm(film("Фильм"));
+
+        runConcurrently(i -> {
+            storage.addLike(film.getId(), i + 1);
+            if (i % 10 == 0) {
+                Film update = film("Фильм " + i);
+                update.setId(film.getId());
+                storage.updateFilm(update);
+            }
+        });
+
+        assertThat(storage.getLikes(film.getId())).hasSize(TASKS);
+        assertThat(storage.getPopularFilms(1, null, null)).first()
+                .satisfies(popular -> assertThat(popular.getLikes()).hasSize(TASKS));
+    }
+
+    // Встречные лайки и снятия одной пары: индекс лайков в итоге совпадает с хранилищем
+    @Test
+    void concurrentLikeAndUnlikeKeepLikesIndexInStep() throws Exception {
+        InMemoryFilmStorage storage = new InMemoryFilmStorage(withUsers(4));
+        LikesIndex likesIndex = new LikesIndex(storage);
+        FilmService service = new FilmService(storage, null, null, new FilmMapper(), likesIndex,
+                new FilmSearchIndex(storage));
+        int filmId = storage.addFilm(film("Фильм")).getId();
+        likesIndex.getLikers(filmId);
+
+        runConcurrently(i -> {
+            int userId = i % 4 + 1;
+            if (i % 3 == 0) {
+                service.removeLike(filmId, userId);
+            } else {
+                service.addLike(filmId, userId);
+            }
+        });
+
+        assertThat(likesIndex.getLikers(filmId)).containsExactlyInAnyOrderElementsOf(storage.getLikes(filmId));
+        for (int userId = 1; userId <= 4; userId++) {
+            assertThat(likesIndex.getLikedFilms(userId).contains(filmId))
+                    .isEqualTo(storage.getLikes(filmId).contains(userId));
+        }
+    }
+
+    // Параллельные изменения одного фильма: индекс находит фильм по тому же названию, что и в хранилище
+    @Test
+    void concurrentUpdatesKeepSearchIndexInStep() throws Exception {
+        InMemoryFilmStorage storage = new InMemoryFilmStorage(withUsers(0));
+        FilmSearchIndex searchIndex = new FilmSearchIndex(storage);
+        FilmMapper mapper = new FilmMapper();
+        FilmService service = new FilmService(storage, new SingleMpaStorage(), null, mapper,
+                new LikesIndex(storage), searchIndex);
+        int filmId = service.addFilm(mapper.toDto(film("Фильм"))).getId();
+        searchIndex.preload();
+
+        runConcurrently(i -> {
+            Film update = film("Название" + i);
+            update.setId(filmId);
+            service.updateFilm(mapper.toDto(update));
+        });
+
+        String name = storage.getById(filmId).getName().toLowerCase();
+        assertThat(searchIndex.search(name, EnumSet.of(FilmSearchIndex.Field.TITLE), TASKS))
+                .extracting(FilmSearchIndex.Hit::filmId).containsExactly(filmId);
+    }
+
+    // Индекс меняет множества на месте: выданный раньше снимок прежний, повторное чтение отдаёт тот же снимок
+    @Test
+    void likesIndexChangesDoNotLeakIntoSnapshots() {
+        InMemoryFilmStorage storage = new InMemoryFilmStorage(withUsers(2));
+        LikesIndex likesIndex = new LikesIndex(storage);
+        int filmId = storage.addFilm(film("Фильм")).getId();
+        storage.addLike(filmId, 1);
+        IntSet before = likesIndex.getLikers(filmId);
+
+        likesIndex.addLike(filmId, 2);
+        likesIndex.removeLike(filmId, 1);
+
+        assertThat(before).containsExactly(1);
+        assertThat(likesIndex.getLikers(filmId)).containsExactly(2);
+        assertThat(likesIndex.getLikers(filmId)).isSameAs(likesIndex.getLikers(filmId));
+        likesIndex.removeLike(filmId, 2);
+        assertThat(likesIndex.getLikers(filmId)).isEmpty();
+        assertThat(likesIndex.getLikedFilms(2)).isEmpty();
+    }
+
+    @Test
+    void repeatedLikeAndMissingUnlikeKeepVersion() {
+        InMemoryFilmStorage storage = new InMemoryFilmStorage(withUsers(2));
+        int filmId = storage.addFilm(film("Фильм")).getId();
+        storage.addLike(filmId, 1);
+        long version = storage.getVersion(filmId);
+
+        storage.addLike(filmId, 1);
+        storage.removeLike(filmId, 2);
+
+        assertThat(storage.getVersion(filmId)).isEqualTo(version);
+        storage.removeLike(filmId, 1);
+        assertThat(storage.getVersion(filmId)).isEqualTo(version + 1);
+    }
+
+    // Лайки и друзья меняются на месте, а прочитанные раньше снимки остаются прежними
+    @Test
+    void changesDoNotLeakIntoPublishedSnapshots() {
+        InMemoryFilmStorage films = new InMemoryFilmStorage(withUsers(2));
+        int filmId = films.addFilm(film("Фильм")).getId();
+        films.addLike(filmId, 1);
+        Film before = films.getById(filmId);
+
+        films.addLike(filmId, 2);
+
+        assertThat(before.getLikes()).containsExactly(1);
+        assertThat(films.getById(filmId).getLikes()).containsExactly(1, 2);
+        assertThat(films.getById(filmId).getLikeCount()).isEqualTo(2);
+        // Без изменений повторное чтение отдаёт тот же снимок, а не новую копию
+        assertThat(films.getById(filmId).getLikes()).isSameAs(films.getById(filmId).getLikes());
+
+        InMemoryUserStorage users = new InMemoryUserStorage();
+        int userId = users.addUser(user("snap1@mail.ru", "snap1")).getId();
+        int friendId = users.addUser(user("snap2@mail.ru", "snap2")).getId();
+        User beforeFriend = users.getById(userId);
+
+        users.addFriend(userId, friendId);
+
+        assertThat(beforeFriend.getFriends()).isEmpty();
+        assertThat(users.getById(userId).getFriends()).containsExactly(friendId);
+        assertThat(users.getById(userId).getVersion()).isEqualTo(beforeFriend.getVersion() + 1);
+    }
+
+    // Лайк несуществующего пользователя отклоняется, как и в БД
+    @Test
+    void likesOfUnknownUsersAreRejected() {
+        InMemoryFilmStorage storage = new InMemoryFilmStorage(withUsers(1));
+        int filmId = storage.addFilm(film("Фильм")).getId();
+
+        assertThrows(NotFoundException.class, () -> storage.addLike(filmId, 999_999));
+        assertThat(storage.getById(filmId).getLikeCount()).isZero();
+    }
+
+    private void request(InMemoryUserStorage storage, int userId, int friendId) {
+        try {
+            storage.addFriend(userId, friendId);
+        } catch (ValidationException e) {
+            // Заявка этой пары уже отправлена или дружба уже подтверждена
+        }
+    }
+
+    private void runConcurrently(IndexedTask task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<Object>> futures = new ArrayList<>();
+            for (int i = 0; i < TASKS; i++) {
+                int index = i;
+                Callable<Object> callable = () -> {
+                    task.run(index);
+                    return null;
+                };
+                futures.add(executor.submit(callable));
+            }
+            for (Future<Object> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    // Пользователи с id от 1 до count: лайки принимаются только от существующих
+    private InMemoryUserStorage withUsers(int count) {
+        InMemoryUserStorage users = new InMemoryUserStorage();
+        for (int i = 1; i <= count; i++) {
+            users.addUser(user("liker" + i + "@mail.ru", "liker" + i));
+        }
+        return users;
+    }
+
+    private User user(String email, String login) {
+        User user = new User();
+        user.setEmail(email);
+        user.setLogin(login);
+        user.setName(login);
+        user.setBirthday(LocalDate.of(1990, 1, 1));
+        return user;
+    }
+
+    private Film film(String name) {
+        Film film = new Film();
+        film.setName(name);
+        film.setDescription("Описание");
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setDuration(100);
+        Mpa mpa = new Mpa();
+        mpa.setId(1);
+        film.setMpa(mpa);
+        return film;
+    }
+
+    private static class SingleMpaStorage implements MpaStorage {
+        @Override
+        public Collection<Mpa> getAllMpa() {
+            return List.of(getMpaById(1));
+        }
+
+        @Override
+        public Mpa getMpaById(int id) {
+            Mpa mpa = new Mpa();
+            mpa.setId(id);
+            mpa.setName("G");
+            return mpa;
+        }
+
+        @Override
+        public long getVersion() {
+            return 0;
+        }
+    }
+
+    @FunctionalInterface
+    private interface IndexedTask {
+        void run(int index) throws Exception;
+    }
+}
@@ -0,0 +1,61 @@
+package ru.yandex.practicum.filmorate;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import ru.yandex.practicum.filmorate.model.IntSet;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.util.Iterator;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IntSetTest {
+
+    @Test
+    void keepsValuesSortedAndUnique() {
+        IntSet set = IntSet.of(5, 1, 3, 5, 2);
+
+        assertThat(set).containsExactly(1, 2, 3, 5);
+        assertThat(set.add(4)).isTrue();
+        assertThat(set.add(4)).isFalse();
+        assertThat(set.remove(1)).isTrue();
+        assertThat(set.remove(1)).isFalse();
+        assertThat(set.toIntArray()).containsExactly(2, 3, 4, 5);
+        assertThat(set.contains(3)).isTrue();
+        assertThat(set.contains((Object) "3")).isFalse();
+    }
+
+    @Test
+    void behavesLikeRegularSet() {
+        IntSet set = IntSet.of(1, 2, 3);
+
+        assertThat(set).isEqualTo(Set.of(1, 2, 3));
+        assertThat(set.hashCode()).isEqualTo(Set.of(1, 2, 3).hashCode());
+
+        Iterator<Integer> iterator = set.iterator();
+        iterator.next();
+        iterator.next();
+        iterator.remove();
+        assertThat(iterator.next()).isEqualTo(3);
+        assertThat(set).containsExactly(1, 3);
+
+        set.retainAll(Set.of(3, 4));
+        assertThat(set).containsExactly(3);
+    }
+
+    @Test
+    void serializesAsPlainJsonArray() throws Exception {
+        ObjectMapper mapper = Jackson2ObjectMapperBuilder.json().build();
+        User user = new User();
+        user.setLogin("login");
+        user.setFriends(IntSet.of(7, 3));
+
+        String json = mapper.writeValueAsString(user);
+        User restored = mapper.readValue(json, User.class);
+
+        assertThat(json).contains("\"friends\":[3,7]");
+        assertThat(restored.getFriends()).isInstanceOf(IntSet.class).containsExactly(3, 7);
+    }
+}
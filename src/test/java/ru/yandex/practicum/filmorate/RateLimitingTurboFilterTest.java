@@ -0,0 +1,54 @@
+package ru.yandex.practicum.filmorate;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.core.spi.FilterReply;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.logging.RateLimitingTurboFilter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RateLimitingTurboFilterTest {
+    private RateLimitingTurboFilter filter;
+    private Logger logger;
+
+    @BeforeEach
+    void setup() {
+        LoggerContext context = new LoggerContext();
+        logger = context.getLogger("test");
+        logger.setLevel(Level.DEBUG);
+        filter = new RateLimitingTurboFilter();
+        filter.setMaxPerSecond(3);
+        filter.start();
+    }
+
+    @Test
+    void limitsRepeatedMessagesPerTemplate() {
+        int passed = 0;
+        for (int i = 0; i < 10; i++) {
+            if (decide(Level.INFO, "Пользователь {} добавил друга") == FilterReply.NEUTRAL) {
+                passed++;
+            }
+        }
+
+        // Если тест попал на границу секунды, окно могло начаться заново
+        assertThat(passed).isBetween(3, 6);
+        assertThat(decide(Level.INFO, "Другое сообщение {}")).isEqualTo(FilterReply.NEUTRAL);
+    }
+
+    @Test
+    void neverLimitsWarningsOrDisabledLevels() {
+        logger.setLevel(Level.INFO);
+        for (int i = 0; i < 10; i++) {
+            assertThat(decide(Level.WARN, "Ошибка {}")).isEqualTo(FilterReply.NEUTRAL);
+            assertThat(decide(Level.DEBUG, "Отладка {}")).isEqualTo(FilterReply.NEUTRAL);
+        }
+        assertThat(decide(Level.INFO, "Отладка {}")).isEqualTo(FilterReply.NEUTRAL);
+    }
+
+    private FilterReply decide(Level level, String format) {
+        return filter.decide(null, logger, level, format, new Object[]{1}, null);
+    }
+}
@@ -0,0 +1,110 @@
+package ru.yandex.practicum.filmorate;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.boot.test.autoconfigure.json.AutoConfigureJson;
+import org.springframework.context.annotation.ComponentScan;
+import ru.yandex.practicum.filmorate.dto.FilmDto;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.RecommendationService;
+import ru.yandex.practicum.filmorate.storage.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.UserDbStorage;
+
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@AutoConfigureJson
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@ComponentScan(basePackages = "ru.yandex.practicum.filmorate")
+class RecommendationServiceTest {
+    private final RecommendationService recommendationService;
+    private final FilmService filmService;
+    private final FilmDbStorage filmStorage;
+    private final UserDbStorage userStorage;
+
+    @Test
+    public void recommendsFilmsOfUsersWithLargestOverlapAndFollowsNewLikes() {
+        int target = addUser("target");
+        int close = addUser("close");
+        int distant = addUser("distant");
+        int shared1 = addFilm("Shared 1");
+        int shared2 = addFilm("Shared 2");
+        int closeOnly = addFilm("Close only");
+        int distantOnly = addFilm("Distant only");
+
+        filmService.addLike(shared1, target);
+        filmService.addLike(shared2, target);
+        filmService.addLike(shared1, close);
+        filmService.addLike(shared2, close);
+        filmService.addLike(closeOnly, close);
+        filmService.addLike(shared1, distant);
+        filmService.addLike(distantOnly, distant);
+
+        assertThat(recommendationService.getRecommendations(target, null))
+                .extracting(FilmDto::getId).containsExactly(closeOnly);
+
+        // Индекс уже построен: новые лайки попадают в него без перестроения
+        filmService.addLike(shared2, distant);
+        filmService.addLike(closeOnly, distant);
+        assertThat(recommendationService.getRecommendations(target, null))
+                .extracting(FilmDto::getId).containsExactly(closeOnly, distantOnly);
+
+        filmService.removeLike(shared2, close);
+        assertThat(recommendationService.getRecommendations(target, null))
+                .extracting(FilmDto::getId).containsExactly(closeOnly, distantOnly);
+        assertThat(recommendationService.getRecommendations(close, null))
+                .extracting(FilmDto::getId).containsExactly(shared2, distantOnly);
+
+        // Ответ ограничен limit: остаются лучшие по числу соседей, а не по id
+        filmService.addLike(shared2, close);
+        filmService.removeLike(closeOnly, close);
+        filmService.addLike(distantOnly, close);
+        assertThat(recommendationService.getRecommendations(target, null))
+                .extracting(FilmDto::getId).containsExactly(distantOnly, closeOnly);
+        assertThat(recommendationService.getRecommendations(target, 1))
+                .extracting(FilmDto::getId).containsExactly(distantOnly);
+        assertThrows(ValidationException.class, () -> recommendationService.getRecommendations(target, 0));
+        assertThrows(ValidationException.class, () -> recommendationService.getRecommendations(target, 1001));
+    }
+
+    @Test
+    public void noLikesMeansNoRecommendations() {
+        int lonely = addUser("lonely");
+
+        assertThat(recommendationService.getRecommendations(lonely, null)).isEmpty();
+        assertThrows(NotFoundException.class, () -> recommendationService.getRecommendations(999_999, null));
+    }
+
+    private int addFilm(String name) {
+        Film film = new Film();
+        film.setName(name);
+        film.setDescription("Description");
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setDuration(100);
+        Mpa mpa = new Mpa();
+        mpa.setId(1);
+        film.setMpa(mpa);
+        return filmStorage.addFilm(film).getId();
+    }
+
+    private int addUser(String login) {
+        User user = new User();
+        user.setEmail(login + "@mail.com");
+        user.setLogin(login);
+        user.setName(login);
+        user.setBirthday(LocalDate.of(1990, 1, 1));
+        return userStorage.addUser(user).getId();
+    }
+}
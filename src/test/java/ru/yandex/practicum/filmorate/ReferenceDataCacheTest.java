@@ -0,0 +1,92 @@
+package ru.yandex.practicum.filmorate;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.boot.test.autoconfigure.json.AutoConfigureJson;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.storage.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.GenreStorage;
+import ru.yandex.practicum.filmorate.storage.MpaStorage;
+import ru.yandex.practicum.filmorate.storage.ReferenceDataCache;
+
+import java.time.LocalDate;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@AutoConfigureJson
+@Import(StatementCounter.class)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@ComponentScan(basePackages = "ru.yandex.practicum.filmorate")
+class ReferenceDataCacheTest {
+    private final ReferenceDataCache referenceDataCache;
+    private final MpaStorage mpaStorage;
+    private final GenreStorage genreStorage;
+    private final FilmDbStorage filmStorage;
+    private final JdbcTemplate jdbcTemplate;
+    private final StatementCounter statementCounter;
+
+    @Test
+    public void referenceLookupsDoNotQueryDatabase() {
+        statementCounter.reset();
+
+        Mpa mpa = mpaStorage.getMpaById(3);
+        Genre genre = genreStorage.getGenreById(6);
+
+        assertThat(mpa.getCode()).isEqualTo("PG-13");
+        assertThat(genre.getName()).isEqualTo("Боевик");
+        assertThat(mpaStorage.getAllMpa()).hasSize(5);
+        assertThat(genreStorage.getAllGenres()).hasSize(6);
+        assertThat(statementCounter.count()).isZero();
+    }
+
+    @Test
+    public void unknownIdsAreNotFound() {
+        assertThrows(NotFoundException.class, () -> mpaStorage.getMpaById(999));
+        assertThrows(NotFoundException.class, () -> genreStorage.getGenreById(0));
+    }
+
+    @Test
+    public void filmHydrationUsesCachedReferenceData() {
+        Film film = new Film();
+        film.setName("Cached");
+        film.setDescription("Cached reference data");
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setDuration(100);
+        Mpa mpa = new Mpa();
+        mpa.setId(4);
+        film.setMpa(mpa);
+        Genre genre = new Genre();
+        genre.setId(2);
+        film.setGenres(Set.of(genre));
+
+        Film saved = filmStorage.addFilm(film);
+
+        assertThat(saved.getMpa()).isSameAs(referenceDataCache.getMpa(4));
+        assertThat(saved.getGenres()).containsExactly(referenceDataCache.getGenre(2));
+    }
+
+    @Test
+    public void invalidateReloadsReferenceData() {
+        jdbcTemplate.update("INSERT INTO genres (name) VALUES ('Фантастика')");
+        assertThat(referenceDataCache.getAllGenres()).hasSize(6);
+
+        referenceDataCache.invalidate();
+
+        assertThat(referenceDataCache.getAllGenres()).hasSize(7);
+        assertThat(referenceDataCache.getGenre(7).getName()).isEqualTo("Фантастика");
+        referenceDataCache.invalidate();
+    }
+}
@@ -0,0 +1,72 @@
+package ru.yandex.practicum.filmorate;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Оборачивает DataSource тестового контекста и считает каждый подготовленный или обычный
+ * JDBC-запрос. Подключается к тесту через {@code @Import(StatementCounter.class)}. Считаются только
+ * запросы потока, вызвавшего {@link #reset()}: фоновые потоки приложения на счёт теста не влияют.
+ */
+public class StatementCounter implements BeanPostProcessor {
+    private final AtomicInteger statements = new AtomicInteger();
+    private volatile Thread owner;
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource dataSource) {
+            return new CountingDataSource(dataSource);
+        }
+        return bean;
+    }
+
+    public void reset() {
+        owner = Thread.currentThread();
+        statements.set(0);
+    }
+
+    public int count() {
+        return statements.get();
+    }
+
+    private class CountingDataSource extends DelegatingDataSource {
+        CountingDataSource(DataSource target) {
+            super(target);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            return counting(super.getConnection());
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            return counting(super.getConnection(username, password));
+        }
+
+        private Connection counting(Connection target) {
+            return (Connection) Proxy.newProxyInstance(
+                    Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class},
+                    (proxy, method, args) -> {
+                        String name = method.getName();
+                        if (Thread.currentThread() == owner && (name.equals("prepareStatement")
+                                || name.equals("prepareCall") || name.equals("createStatement"))) {
+                            statements.incrementAndGet();
+                        }
+                        try {
+                            return method.invoke(target, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                    });
+        }
+    }
+}
@@ -2,6 +2,12 @@ package ru.yandex.practicum.filmorate;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+import ru.yandex.practicum.filmorate.controller.NdjsonWriter;
 import ru.yandex.practicum.filmorate.controller.UserController;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
 import ru.yandex.practicum.filmorate.model.User;
@@ -9,9 +15,15 @@ import ru.yandex.practicum.filmorate.service.UserService;
 import ru.yandex.practicum.filmorate.storage.InMemoryUserStorage;
 import ru.yandex.practicum.filmorate.storage.UserStorage;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 class UserControllerTest {
@@ -22,7 +34,7 @@ class UserControllerTest {
     void setup() {
         UserStorage userStorage = new InMemoryUserStorage(); // твоя реализация UserStorage
         UserService userService = new UserService(userStorage);
-        controller = new UserController(userService);
+        controller = new UserController(userService, new NdjsonWriter(Jackson2ObjectMapperBuilder.json().build()));
     }
 
     @Test
@@ -113,4 +125,71 @@ class UserControllerTest {
         assertEquals("Updated Name", updated.getName());
         assertEquals(LocalDate.of(1991, 2, 2), updated.getBirthday());
     }
+
+    @Test
+    void shouldAnswerNotModifiedUntilUserChanges() {
+        User user = new User();
+        user.setEmail("etag@example.com");
+        user.setLogin("etag");
+        user.setName("ETag");
+        user.setBirthday(LocalDate.of(1990, 1, 1));
+        int id = controller.addUser(user).getId();
+
+        MockHttpServletResponse first = new MockHttpServletResponse();
+        assertNotNull(controller.getUserById(id, new ServletWebRequest(new MockHttpServletRequest("GET", "/users/" + id), first)));
+        String etag = first.getHeader(HttpHeaders.ETAG);
+
+        MockHttpServletResponse second = new MockHttpServletResponse();
+        assertNull(controller.getUserById(id, conditionalRequest(id, etag, second)));
+        assertEquals(304, second.getStatus());
+
+        user.setName("Renamed");
+        controller.updateUser(id, user);
+        MockHttpServletResponse third = new MockHttpServletResponse();
+        assertEquals("Renamed", controller.getUserById(id, conditionalRequest(id, etag, third)).getName());
+        assertEquals(200, third.getStatus());
+    }
+
+    private ServletWebRequest conditionalRequest(int id, String etag, MockHttpServletResponse response) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/users/" + id);
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, etag);
+        return new ServletWebRequest(request, response);
+    }
+
+    @Test
+    void shouldReturnUsersPageAfterCursor() {
+        for (int i = 1; i <= 3; i++) {
+            User user = new User();
+            user.setEmail("page" + i + "@example.com");
+            user.setLogin("page" + i);
+            user.setName("Page " + i);
+            user.setBirthday(LocalDate.of(1990, 1, 1));
+            controller.addUser(user);
+        }
+
+        List<Integer> ids = controller.getAllUsers(1, 1).stream().map(User::getId).toList();
+
+        assertEquals(List.of(2), ids);
+        assertThrows(ValidationException.class, () -> controller.getAllUsers(0, 0));
+    }
+
+    @Test
+    void shouldStreamUsersAsNdjson() throws Exception {
+        for (int i = 1; i <= 2; i++) {
+            User user = new User();
+            user.setEmail("stream" + i + "@example.com");
+            user.setLogin("stream" + i);
+            user.setName("Stream " + i);
+            user.setBirthday(LocalDate.of(1990, 1, 1));
+            controller.addUser(user);
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        controller.streamAllUsers().writeTo(out);
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+
+        assertEquals(2, lines.length);
+        assertTrue(lines[0].contains("\"login\":\"stream1\""));
+        assertTrue(lines[1].contains("\"login\":\"stream2\""));
+    }
 }
@@ -0,0 +1,124 @@
+package ru.yandex.practicum.filmorate;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.boot.test.autoconfigure.json.AutoConfigureJson;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.Import;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.UserDbStorage;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@AutoConfigureJson
+@Import(StatementCounter.class)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@ComponentScan(basePackages = "ru.yandex.practicum.filmorate")
+class UserDbStorageQueryCountTest {
+    private final UserDbStorage userStorage;
+    private final StatementCounter statementCounter;
+
+    @Test
+    public void friendListsAreLoadedInConstantNumberOfQueries() {
+        int userId = addUser("owner").getId();
+        int otherId = addUser("other").getId();
+        List<Integer> friendIds = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            int friendId = addUser("friend" + i).getId();
+            friendIds.add(friendId);
+            userStorage.addFriend(userId, friendId);
+            userStorage.addFriend(friendId, userId);
+            if (i % 2 == 0) {
+                userStorage.addFriend(otherId, friendId);
+            }
+        }
+
+        statementCounter.reset();
+        List<User> friends = userStorage.getFriendUsers(userId);
+        int friendStatements = statementCounter.count();
+
+        statementCounter.reset();
+        List<User> common = userStorage.getCommonFriends(userId, otherId);
+        int commonStatements = statementCounter.count();
+
+        assertThat(friends).extracting(User::getId).containsExactlyElementsOf(friendIds);
+        assertThat(friends).allSatisfy(friend -> assertThat(friend.getFriends()).containsExactly(userId));
+        assertThat(common).extracting(User::getId)
+                .containsExactly(friendIds.get(0), friendIds.get(2), friendIds.get(4), friendIds.get(6), friendIds.get(8));
+        assertThat(friendStatements).isEqualTo(2);
+        assertThat(commonStatements).isEqualTo(2);
+    }
+
+    @Test
+    public void commonFriendsOfStrangersAreEmpty() {
+        int userId = addUser("lonely1").getId();
+        int otherId = addUser("lonely2").getId();
+
+        assertThat(userStorage.getCommonFriends(userId, otherId)).isEmpty();
+        assertThat(userStorage.getFriendUsers(userId)).isEmpty();
+    }
+
+    @Test
+    public void writesStayWithinStatementBudget() {
+        statementCounter.reset();
+        User user = addUser("budget");
+        assertThat(statementCounter.count()).isEqualTo(1);
+        int friendId = addUser("budgetFriend").getId();
+
+        statementCounter.reset();
+        userStorage.addFriend(user.getId(), friendId);
+        // Переход дружбы, версия пользователя и событие ленты
+        assertThat(statementCounter.count()).isEqualTo(3);
+
+        user.setName("Renamed");
+        statementCounter.reset();
+        User updated = userStorage.updateUser(user);
+        assertThat(statementCounter.count()).isEqualTo(1);
+        assertThat(updated.getFriends()).containsExactly(friendId);
+        assertThat(updated.getVersion()).isEqualTo(userStorage.getVersion(user.getId()));
+        assertThat(userStorage.getById(user.getId()).getName()).isEqualTo("Renamed");
+
+        statementCounter.reset();
+        userStorage.removeFriend(user.getId(), friendId);
+        assertThat(statementCounter.count()).isEqualTo(3);
+    }
+
+    @Test
+    public void constraintViolationsAreReportedAsBefore() {
+        User user = addUser("checked");
+        int friendId = addUser("checkedFriend").getId();
+        userStorage.addFriend(user.getId(), friendId);
+
+        assertThrows(ValidationException.class, () -> userStorage.addFriend(user.getId(), friendId));
+        assertThrows(NotFoundException.class, () -> userStorage.addFriend(user.getId(), 999_999));
+        assertThrows(NotFoundException.class, () -> userStorage.removeFriend(999_999, friendId));
+        assertThrows(ValidationException.class, () -> addUser("CHECKED"));
+
+        user.setEmail("CheckedFriend@mail.com");
+        assertThrows(ValidationException.class, () -> userStorage.updateUser(user));
+        user.setEmail("checked@mail.com");
+        user.setId(999_999);
+        assertThrows(NotFoundException.class, () -> userStorage.updateUser(user));
+    }
+
+    private User addUser(String login) {
+        User user = new User();
+        user.setEmail(login + "@mail.com");
+        user.setLogin(login);
+        user.setName(login);
+        user.setBirthday(LocalDate.of(1990, 1, 1));
+        return userStorage.addUser(user);
+    }
+}
@@ -5,6 +5,7 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.boot.test.autoconfigure.json.AutoConfigureJson;
 import org.springframework.context.annotation.ComponentScan;
 import ru.yandex.practicum.filmorate.model.User;
 
@@ -16,6 +17,7 @@ import static org.junit.jupiter.api.Assertions.*;
 
 @JdbcTest
 @AutoConfigureTestDatabase
+@AutoConfigureJson
 @RequiredArgsConstructor(onConstructor_ = @Autowired)
 @ComponentScan(basePackages = "ru.yandex.practicum.filmorate")
 class UserDbStorageTest {
@@ -165,4 +167,28 @@ class UserDbStorageTest {
 
         assertThat(friends).isNotEmpty();
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testGetUsersAfter() {
+        User user1 = new User();
+        user1.setEmail("page1@mail.com");
+        user1.setLogin("page1");
+        user1.setName("Page User 1");
+        user1.setBirthday(LocalDate.of(1990, 1, 1));
+        User addedUser1 = userStorage.addUser(user1);
+
+        User user2 = new User();
+        user2.setEmail("page2@mail.com");
+        user2.setLogin("page2");
+        user2.setName("Page User 2");
+        user2.setBirthday(LocalDate.of(1995, 5, 15));
+        User addedUser2 = userStorage.addUser(user2);
+
+        userStorage.addFriend(addedUser2.getId(), addedUser1.getId());
+
+        Collection<User> page = userStorage.getUsersAfter(addedUser1.getId(), 10);
+
+        assertThat(page).extracting(User::getId).containsExactly(addedUser2.getId());
+        assertThat(page.iterator().next().getFriends()).containsExactly(addedUser1.getId());
+    }
+}